@@ -3,9 +3,24 @@ import { HttpClient } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { environment } from '../../../environments/environment';
 
+export interface IngestJobStatus {
+  id: string;
+  state: 'QUEUED' | 'RUNNING' | 'COMPLETED' | 'FAILED' | 'CANCELLED';
+  source: string;
+  message: string | null;
+  rowsParsed: number;
+  rowsPersisted: number;
+  rowsFailed: number;
+  rowsPerSecond: number;
+  progressPercentage: number;
+  etaSeconds: number | null;
+  errors: string[];
+}
+
 export interface DataLoadStatus {
   totalRecords: number;
   dataLoaded: boolean;
+  activeJob: IngestJobStatus | null;
 }
 
 @Injectable({
@@ -16,8 +31,16 @@ export class DataLoaderService {
 
   constructor(private http: HttpClient) {}
 
-  loadData(): Observable<{ status: string; message: string }> {
-    return this.http.post<{ status: string; message: string }>(`${this.apiUrl}/load`, {});
+  loadData(): Observable<{ status: string; message: string; jobId: string }> {
+    return this.http.post<{ status: string; message: string; jobId: string }>(`${this.apiUrl}/load`, {});
+  }
+
+  getJob(jobId: string): Observable<IngestJobStatus> {
+    return this.http.get<IngestJobStatus>(`${this.apiUrl}/jobs/${jobId}`);
+  }
+
+  cancelJob(jobId: string): Observable<IngestJobStatus> {
+    return this.http.post<IngestJobStatus>(`${this.apiUrl}/jobs/${jobId}/cancel`, {});
   }
 
   getDataLoadStatus(): Observable<DataLoadStatus> {
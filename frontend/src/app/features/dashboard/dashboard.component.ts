@@ -1,9 +1,11 @@
 import { Component, OnInit } from '@angular/core';
 import { StatisticsService } from '../../core/services/statistics.service';
-import { DataLoaderService, DataLoadStatus } from '../../core/services/data-loader.service';
+import { DataLoaderService, DataLoadStatus, IngestJobStatus } from '../../core/services/data-loader.service';
 import { DashboardStatistics } from '../../core/models/weather.model';
 import { ChartDataSets, ChartOptions, ChartType } from 'chart.js';
 import { Label, SingleDataSet, Color } from 'ng2-charts';
+import { timer } from 'rxjs';
+import { switchMap, takeWhile } from 'rxjs/operators';
 
 @Component({
   selector: 'app-dashboard',
@@ -16,6 +18,7 @@ export class DashboardComponent implements OnInit {
   error: string | null = null;
   dataStatus: DataLoadStatus | null = null;
   loadingData = false;
+  loadJob: IngestJobStatus | null = null;
 
   // Pie chart for weather conditions
   public pieChartLabels: Label[] = [];
@@ -100,10 +103,21 @@ export class DashboardComponent implements OnInit {
 
   loadData(): void {
     this.loadingData = true;
-    this.dataLoaderService.loadData().subscribe({
-      next: () => {
-        this.loadingData = false;
-        this.checkDataStatus();
+    this.dataLoaderService.loadData().pipe(
+      switchMap((response) => timer(0, 2000).pipe(
+        switchMap(() => this.dataLoaderService.getJob(response.jobId)),
+        takeWhile((job) => job.state === 'QUEUED' || job.state === 'RUNNING', true)
+      ))
+    ).subscribe({
+      next: (job) => {
+        this.loadJob = job;
+        if (job.state === 'FAILED') {
+          this.loadingData = false;
+          this.error = 'Failed to load data from CSV';
+        } else if (job.state === 'COMPLETED' || job.state === 'CANCELLED') {
+          this.loadingData = false;
+          this.checkDataStatus();
+        }
       },
       error: (err) => {
         this.loadingData = false;
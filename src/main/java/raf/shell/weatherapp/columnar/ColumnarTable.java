@@ -0,0 +1,372 @@
+package raf.shell.weatherapp.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * The weather facts the statistics need, held as primitive column arrays. Nullable columns keep
+ * 0 in the value array and a set bit in their null bitmap, so sums run without branching and
+ * counts come from popcounts. Condition is stored as its string dictionary code (0 for null),
+ * country as an index into this table's own country list.
+ * <p>
+ * There is a single writer, which appends rows and then {@link #publish()}es them. Readers work on
+ * the last published {@link View}: appended rows go beyond its row count and grown arrays are
+ * copies, so a scan never sees a half-written row and needs no lock. Scans split the rows into
+ * fixed ranges that run on the common fork-join pool and are merged afterwards.
+ */
+public final class ColumnarTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int CHUNK_ROWS = 1 << 16;
+
+    private record Columns(long[] ids, int[] locations, int[] conditions,
+                           double[] temperatures, long[] temperatureNulls,
+                           int[] humidities, long[] humidityNulls,
+                           double[] pressures, long[] pressureNulls) {
+
+        static Columns withCapacity(int capacity) {
+            int words = (capacity + 63) >>> 6;
+            return new Columns(new long[capacity], new int[capacity], new int[capacity],
+                    new double[capacity], new long[words], new int[capacity], new long[words],
+                    new double[capacity], new long[words]);
+        }
+
+        Columns copy(int capacity) {
+            int words = (capacity + 63) >>> 6;
+            return new Columns(Arrays.copyOf(ids, capacity), Arrays.copyOf(locations, capacity),
+                    Arrays.copyOf(conditions, capacity),
+                    Arrays.copyOf(temperatures, capacity), Arrays.copyOf(temperatureNulls, words),
+                    Arrays.copyOf(humidities, capacity), Arrays.copyOf(humidityNulls, words),
+                    Arrays.copyOf(pressures, capacity), Arrays.copyOf(pressureNulls, words));
+        }
+    }
+
+    // Per location: country index and coordinates, NaN when unknown
+    private record Locations(int[] countries, double[] latitudes, double[] longitudes) {
+
+        Locations copy(int capacity) {
+            return new Locations(Arrays.copyOf(countries, capacity), Arrays.copyOf(latitudes, capacity),
+                    Arrays.copyOf(longitudes, capacity));
+        }
+    }
+
+    private record View(Columns columns, int rows, Locations locations, int locationCount,
+                        String[] countries, int countryCount, int maxCondition) {
+    }
+
+    public static class Sums {
+        public long records;
+        public double temperatureSum;
+        public long temperatureCount;
+        public long humiditySum;
+        public long humidityCount;
+        public double pressureSum;
+        public long pressureCount;
+    }
+
+    public static class CountrySums extends Sums {
+        public long locations;
+        public double latitudeSum;
+        public long latitudeCount;
+        public double longitudeSum;
+        public long longitudeCount;
+    }
+
+    // Condition counts are indexed by dictionary code
+    public record Summary(Sums totals, long[] conditionCounts, Map<String, CountrySums> countries) {
+    }
+
+    // Writer state
+    private Columns columns = Columns.withCapacity(INITIAL_CAPACITY);
+    private int rows;
+    private Locations locations = new Locations(new int[256], new double[256], new double[256]);
+    private int locationCount;
+    private final Map<Long, Integer> locationIndexes = new HashMap<>();
+    private String[] countries = new String[64];
+    private int countryCount;
+    private final Map<String, Integer> countryIndexes = new HashMap<>();
+    private int maxCondition;
+
+    private volatile View view = new View(columns, 0, locations, 0, countries, 0, 0);
+
+    public void addLocation(long id, String country, Double latitude, Double longitude) {
+        if (locationIndexes.containsKey(id)) return;
+        if (locationCount == locations.countries().length) {
+            locations = locations.copy(locationCount * 2);
+        }
+        Integer countryIndex = countryIndexes.get(country);
+        if (countryIndex == null) {
+            if (countryCount == countries.length) {
+                countries = Arrays.copyOf(countries, countryCount * 2);
+            }
+            countryIndex = countryCount++;
+            countries[countryIndex] = country;
+            countryIndexes.put(country, countryIndex);
+        }
+        locations.countries()[locationCount] = countryIndex;
+        locations.latitudes()[locationCount] = latitude != null ? latitude : Double.NaN;
+        locations.longitudes()[locationCount] = longitude != null ? longitude : Double.NaN;
+        locationIndexes.put(id, locationCount++);
+    }
+
+    // The location has to be added first
+    public void append(long id, long locationId, int conditionCode, Double temperature, Integer humidity, Double pressure) {
+        Integer location = locationIndexes.get(locationId);
+        if (location == null) {
+            throw new IllegalArgumentException("Unknown location " + locationId);
+        }
+        if (rows == columns.ids().length) {
+            columns = columns.copy(rows * 2);
+        }
+
+        int row = rows++;
+        columns.ids()[row] = id;
+        columns.locations()[row] = location;
+        columns.conditions()[row] = conditionCode;
+        maxCondition = Math.max(maxCondition, conditionCode);
+        if (temperature != null) {
+            columns.temperatures()[row] = temperature;
+        } else {
+            setBit(columns.temperatureNulls(), row);
+        }
+        if (humidity != null) {
+            columns.humidities()[row] = humidity;
+        } else {
+            setBit(columns.humidityNulls(), row);
+        }
+        if (pressure != null) {
+            columns.pressures()[row] = pressure;
+        } else {
+            setBit(columns.pressureNulls(), row);
+        }
+    }
+
+    // Makes everything appended so far visible to readers
+    public void publish() {
+        view = new View(columns, rows, locations, locationCount, countries, countryCount, maxCondition);
+    }
+
+    public int size() {
+        return view.rows();
+    }
+
+    public Summary summarize() {
+        View snapshot = view;
+        Partial partial = IntStream.range(0, chunks(snapshot.rows()))
+                .parallel()
+                .mapToObj(chunk -> Partial.scan(snapshot, chunk * CHUNK_ROWS,
+                        Math.min(snapshot.rows(), (chunk + 1) * CHUNK_ROWS)))
+                .reduce(Partial::merge)
+                .orElseGet(() -> new Partial(snapshot));
+
+        Map<String, CountrySums> countrySums = new HashMap<>();
+        for (int country = 0; country < snapshot.countryCount(); country++) {
+            if (partial.countryRecords[country] == 0) continue;
+            CountrySums sums = new CountrySums();
+            sums.records = partial.countryRecords[country];
+            sums.temperatureSum = partial.countryTemperatureSums[country];
+            sums.temperatureCount = partial.countryTemperatureCounts[country];
+            sums.humiditySum = partial.countryHumiditySums[country];
+            sums.humidityCount = partial.countryHumidityCounts[country];
+            sums.pressureSum = partial.countryPressureSums[country];
+            sums.pressureCount = partial.countryPressureCounts[country];
+            countrySums.put(snapshot.countries()[country], sums);
+        }
+        // Coordinates are per location, weighted by its records like AVG over the joined rows
+        for (int location = 0; location < snapshot.locationCount(); location++) {
+            long records = partial.locationRecords[location];
+            if (records == 0) continue;
+            CountrySums sums = countrySums.get(snapshot.countries()[snapshot.locations().countries()[location]]);
+            sums.locations++;
+            double latitude = snapshot.locations().latitudes()[location];
+            if (!Double.isNaN(latitude)) {
+                sums.latitudeSum += latitude * records;
+                sums.latitudeCount += records;
+            }
+            double longitude = snapshot.locations().longitudes()[location];
+            if (!Double.isNaN(longitude)) {
+                sums.longitudeSum += longitude * records;
+                sums.longitudeCount += records;
+            }
+        }
+        return new Summary(partial.totals, partial.conditionCounts, countrySums);
+    }
+
+    /**
+     * Ids of the {@code limit} rows with the highest (or lowest) temperature, in that order. Rows
+     * without a temperature are skipped.
+     */
+    public List<Long> topByTemperature(int limit, boolean highest) {
+        View snapshot = view;
+        if (limit <= 0) return List.of();
+        double[] temperatures = snapshot.columns().temperatures();
+        long[] nulls = snapshot.columns().temperatureNulls();
+        double sign = highest ? 1 : -1;
+
+        // Each range keeps its own bounded heap of the best rows, smallest key on top
+        List<Integer> best = IntStream.range(0, chunks(snapshot.rows()))
+                .parallel()
+                .<List<Integer>>mapToObj(chunk -> {
+                    // A chunk never holds more than CHUNK_ROWS candidates, whatever the limit
+                    PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(limit, CHUNK_ROWS) + 1,
+                            (a, b) -> Double.compare(sign * temperatures[a], sign * temperatures[b]));
+                    int end = Math.min(snapshot.rows(), (chunk + 1) * CHUNK_ROWS);
+                    for (int row = chunk * CHUNK_ROWS; row < end; row++) {
+                        if (isSet(nulls, row)) continue;
+                        if (heap.size() < limit) {
+                            heap.add(row);
+                        } else if (sign * temperatures[row] > sign * temperatures[heap.peek()]) {
+                            heap.poll();
+                            heap.add(row);
+                        }
+                    }
+                    return new ArrayList<>(heap);
+                })
+                .reduce(List.of(), (a, b) -> {
+                    List<Integer> merged = new ArrayList<>(a);
+                    merged.addAll(b);
+                    return merged;
+                });
+
+        best.sort((a, b) -> Double.compare(sign * temperatures[b], sign * temperatures[a]));
+        long[] ids = snapshot.columns().ids();
+        return best.stream().limit(limit).map(row -> ids[row]).toList();
+    }
+
+    private static int chunks(int rows) {
+        return (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+
+    private static void setBit(long[] bitmap, int row) {
+        bitmap[row >>> 6] |= 1L << row;
+    }
+
+    private static boolean isSet(long[] bitmap, int row) {
+        return (bitmap[row >>> 6] & (1L << row)) != 0;
+    }
+
+    // Non-null values in [from, to)
+    private static long present(long[] nulls, int from, int to) {
+        long nullCount = 0;
+        for (int row = from; row < to; ) {
+            int word = row >>> 6;
+            int bit = row & 63;
+            int span = Math.min(64 - bit, to - row);
+            long mask = span == 64 ? -1L : ((1L << span) - 1) << bit;
+            nullCount += Long.bitCount(nulls[word] & mask);
+            row += span;
+        }
+        return (to - from) - nullCount;
+    }
+
+    // Sums of one row range; merged pairwise by the fork-join reduction
+    private static final class Partial {
+        private final Sums totals = new Sums();
+        private final long[] conditionCounts;
+        private final long[] countryRecords;
+        private final double[] countryTemperatureSums;
+        private final long[] countryTemperatureCounts;
+        private final long[] countryHumiditySums;
+        private final long[] countryHumidityCounts;
+        private final double[] countryPressureSums;
+        private final long[] countryPressureCounts;
+        private final long[] locationRecords;
+
+        private Partial(View view) {
+            int countries = view.countryCount();
+            conditionCounts = new long[view.maxCondition() + 1];
+            countryRecords = new long[countries];
+            countryTemperatureSums = new double[countries];
+            countryTemperatureCounts = new long[countries];
+            countryHumiditySums = new long[countries];
+            countryHumidityCounts = new long[countries];
+            countryPressureSums = new double[countries];
+            countryPressureCounts = new long[countries];
+            locationRecords = new long[view.locationCount()];
+        }
+
+        static Partial scan(View view, int from, int to) {
+            Partial partial = new Partial(view);
+            Columns columns = view.columns();
+            int[] locationCountries = view.locations().countries();
+            double[] temperatures = columns.temperatures();
+            int[] humidities = columns.humidities();
+            double[] pressures = columns.pressures();
+
+            // Whole-range sums: nulls hold 0, so these loops have no branches
+            double temperatureSum = 0;
+            long humiditySum = 0;
+            double pressureSum = 0;
+            for (int row = from; row < to; row++) {
+                temperatureSum += temperatures[row];
+                humiditySum += humidities[row];
+                pressureSum += pressures[row];
+            }
+            Sums totals = partial.totals;
+            totals.records = to - from;
+            totals.temperatureSum = temperatureSum;
+            totals.temperatureCount = present(columns.temperatureNulls(), from, to);
+            totals.humiditySum = humiditySum;
+            totals.humidityCount = present(columns.humidityNulls(), from, to);
+            totals.pressureSum = pressureSum;
+            totals.pressureCount = present(columns.pressureNulls(), from, to);
+
+            int[] conditions = columns.conditions();
+            int[] locations = columns.locations();
+            long[] temperatureNulls = columns.temperatureNulls();
+            long[] humidityNulls = columns.humidityNulls();
+            long[] pressureNulls = columns.pressureNulls();
+            for (int row = from; row < to; row++) {
+                partial.conditionCounts[conditions[row]]++;
+                int location = locations[row];
+                partial.locationRecords[location]++;
+                int country = locationCountries[location];
+                partial.countryRecords[country]++;
+                partial.countryTemperatureSums[country] += temperatures[row];
+                partial.countryTemperatureCounts[country] += isSet(temperatureNulls, row) ? 0 : 1;
+                partial.countryHumiditySums[country] += humidities[row];
+                partial.countryHumidityCounts[country] += isSet(humidityNulls, row) ? 0 : 1;
+                partial.countryPressureSums[country] += pressures[row];
+                partial.countryPressureCounts[country] += isSet(pressureNulls, row) ? 0 : 1;
+            }
+            return partial;
+        }
+
+        Partial merge(Partial other) {
+            totals.records += other.totals.records;
+            totals.temperatureSum += other.totals.temperatureSum;
+            totals.temperatureCount += other.totals.temperatureCount;
+            totals.humiditySum += other.totals.humiditySum;
+            totals.humidityCount += other.totals.humidityCount;
+            totals.pressureSum += other.totals.pressureSum;
+            totals.pressureCount += other.totals.pressureCount;
+            add(conditionCounts, other.conditionCounts);
+            add(countryRecords, other.countryRecords);
+            add(countryTemperatureSums, other.countryTemperatureSums);
+            add(countryTemperatureCounts, other.countryTemperatureCounts);
+            add(countryHumiditySums, other.countryHumiditySums);
+            add(countryHumidityCounts, other.countryHumidityCounts);
+            add(countryPressureSums, other.countryPressureSums);
+            add(countryPressureCounts, other.countryPressureCounts);
+            add(locationRecords, other.locationRecords);
+            return this;
+        }
+
+        private static void add(long[] target, long[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+
+        private static void add(double[] target, double[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+}
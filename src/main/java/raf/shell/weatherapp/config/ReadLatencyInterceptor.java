@@ -0,0 +1,44 @@
+package raf.shell.weatherapp.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import raf.shell.weatherapp.service.IngestJobService;
+import raf.shell.weatherapp.service.ReadLatencyMetrics;
+
+/**
+ * Times GET requests to the API and records whether an ingest job was running meanwhile.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReadLatencyInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = ReadLatencyInterceptor.class.getName() + ".start";
+    private static final String INGEST_ATTRIBUTE = ReadLatencyInterceptor.class.getName() + ".ingest";
+
+    private final ReadLatencyMetrics readLatencyMetrics;
+    private final IngestJobService ingestJobService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Streamed responses are dispatched a second time when they complete; keep the original start
+        if ("GET".equals(request.getMethod()) && request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            request.setAttribute(INGEST_ATTRIBUTE, ingestJobService.getActiveJob().isPresent());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null) return;
+
+        // Counted as ingest-time if a job was running at either end of the request
+        boolean ingestRunning = (Boolean) request.getAttribute(INGEST_ATTRIBUTE)
+                || ingestJobService.getActiveJob().isPresent();
+        readLatencyMetrics.record(System.nanoTime() - (Long) start, ingestRunning);
+    }
+}
@@ -0,0 +1,32 @@
+package raf.shell.weatherapp.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import raf.shell.weatherapp.dto.UnitSystem;
+
+import java.util.Locale;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final ReadLatencyInterceptor readLatencyInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(readLatencyInterceptor)
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/monitoring/**", "/api/data/**");
+    }
+
+    // Accepts ?units=metric as well as ?units=METRIC; anything else is a 400
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, UnitSystem.class,
+                (Converter<String, UnitSystem>) source -> UnitSystem.valueOf(source.trim().toUpperCase(Locale.ROOT)));
+    }
+}
@@ -1,28 +1,118 @@
 package raf.shell.weatherapp.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import raf.shell.weatherapp.service.CsvDataLoaderService;
+import raf.shell.weatherapp.dto.IngestJobStatus;
+import raf.shell.weatherapp.ingest.IngestJob;
+import raf.shell.weatherapp.ingest.IngestMode;
+import raf.shell.weatherapp.ingest.WeatherPartitions;
+import raf.shell.weatherapp.service.IngestJobService;
 import raf.shell.weatherapp.service.WeatherService;
 
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/data")
 @RequiredArgsConstructor
 public class DataLoaderController {
 
-    private final CsvDataLoaderService csvDataLoaderService;
+    private final IngestJobService ingestJobService;
     private final WeatherService weatherService;
+    private final WeatherPartitions weatherPartitions;
+
+    @Value("${csv.ingest.default-mode:incremental}")
+    private String defaultMode;
 
     @PostMapping("/load")
-    public ResponseEntity<Map<String, String>> loadCsvData() {
-        csvDataLoaderService.loadCsvData();
+    public ResponseEntity<Map<String, String>> loadCsvData(@RequestParam(required = false) String mode) {
         Map<String, String> response = new HashMap<>();
-        response.put("status", "success");
-        response.put("message", "Data loaded successfully");
+        IngestMode ingestMode;
+        try {
+            ingestMode = IngestMode.valueOf((mode != null ? mode : defaultMode).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            response.put("status", "error");
+            response.put("message", "Unknown load mode: " + mode);
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        Optional<IngestJob> job = ingestJobService.submit(ingestMode);
+        if (job.isEmpty()) {
+            response.put("status", "conflict");
+            response.put("message", "A data load is already running");
+            ingestJobService.getActiveJob().ifPresent(active -> response.put("jobId", active.getId()));
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+
+        response.put("status", "accepted");
+        response.put("message", "Data load started");
+        response.put("jobId", job.get().getId());
+        return ResponseEntity.accepted().body(response);
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<IngestJobStatus>> getJobs() {
+        List<IngestJobStatus> jobs = ingestJobService.getJobs()
+                .stream()
+                .map(IngestJob::toStatus)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(jobs);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<IngestJobStatus> getJob(@PathVariable String id) {
+        return ingestJobService.getJob(id)
+                .map(IngestJob::toStatus)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<IngestJobStatus> cancelJob(@PathVariable String id) {
+        return ingestJobService.cancel(id)
+                .map(IngestJob::toStatus)
+                .map(status -> ResponseEntity.accepted().body(status))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Partition name to estimated row count, oldest first
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Long>> getPartitions() {
+        return ResponseEntity.ok(weatherPartitions.describe());
+    }
+
+    // Drops every month of weather records before the given one, e.g. ?before=2024-06; includeBefore=true
+    // also empties p_before, the rows older than the first month and those of unknown time
+    @DeleteMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> dropPartitions(@RequestParam String before,
+                                                              @RequestParam(defaultValue = "false") boolean includeBefore) {
+        Map<String, Object> response = new HashMap<>();
+        YearMonth month;
+        try {
+            month = YearMonth.parse(before);
+        } catch (DateTimeParseException e) {
+            response.put("status", "error");
+            response.put("message", "Expected a month like 2024-06: " + before);
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        Optional<List<String>> dropped = ingestJobService.dropPartitionsBefore(month, includeBefore);
+        if (dropped.isEmpty()) {
+            response.put("status", "conflict");
+            response.put("message", "A data load is running");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        response.put("status", "dropped");
+        response.put("partitions", dropped.get());
         return ResponseEntity.ok(response);
     }
 
@@ -32,6 +122,7 @@ public class DataLoaderController {
         long count = weatherService.getTotalRecordsCount();
         status.put("totalRecords", count);
         status.put("dataLoaded", count > 0);
+        status.put("activeJob", ingestJobService.getActiveJob().map(IngestJob::toStatus).orElse(null));
         return ResponseEntity.ok(status);
     }
 }
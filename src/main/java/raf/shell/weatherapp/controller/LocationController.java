@@ -1,10 +1,14 @@
 package raf.shell.weatherapp.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import raf.shell.weatherapp.dto.CursorPage;
 import raf.shell.weatherapp.dto.LocationDTO;
+import raf.shell.weatherapp.dto.LocationSuggestion;
+import raf.shell.weatherapp.dto.NearbyLocation;
+import raf.shell.weatherapp.dto.UnitSystem;
 import raf.shell.weatherapp.service.LocationService;
 
 import java.util.List;
@@ -17,15 +21,33 @@ public class LocationController {
 
     private final LocationService locationService;
 
+    // count=false skips the total count and returns a Slice
     @GetMapping
-    public ResponseEntity<Page<LocationDTO>> getAllLocations(
+    public ResponseEntity<Slice<LocationDTO>> getAllLocations(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
-        Page<LocationDTO> locations = locationService.getLocationsPaginated(page, size)
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "true") boolean count) {
+        Slice<LocationDTO> locations = (count
+                ? locationService.getLocationsPaginated(page, size)
+                : locationService.getLocationsSlice(page, size))
                 .map(LocationDTO::fromEntity);
         return ResponseEntity.ok(locations);
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<LocationDTO>> scrollLocations(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(locationService.getLocationsAfter(cursor, size).map(LocationDTO::fromEntity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<LocationDTO> getLocationById(@PathVariable Long id) {
         return locationService.getLocationById(id)
@@ -56,4 +78,28 @@ public class LocationController {
                 .collect(Collectors.toList());
         return ResponseEntity.ok(locations);
     }
+
+    // Ranked suggestions for a partially typed location or country name
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<LocationSuggestion>> autocomplete(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationService.autocomplete(q, limit));
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyLocation>> getNearbyLocations(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(required = false) UnitSystem units) {
+        // Negated, so NaN fails the range check too
+        if (!(Math.abs(lat) <= 90) || !(Math.abs(lon) <= 180) || k < 1 || k > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(locationService.getNearby(lat, lon, k, units));
+    }
 }
@@ -9,6 +9,9 @@ import org.springframework.web.bind.annotation.RestController;
 import raf.shell.weatherapp.dto.SystemStatus;
 import raf.shell.weatherapp.repository.LocationRepository;
 import raf.shell.weatherapp.repository.WeatherRecordRepository;
+import raf.shell.weatherapp.service.ReadLatencyMetrics;
+import raf.shell.weatherapp.service.SingleFlight;
+import raf.shell.weatherapp.service.StatisticsCache;
 
 import javax.sql.DataSource;
 import java.lang.management.ManagementFactory;
@@ -25,6 +28,9 @@ public class MonitoringController {
     private final WeatherRecordRepository weatherRecordRepository;
     private final LocationRepository locationRepository;
     private final DataSource dataSource;
+    private final ReadLatencyMetrics readLatencyMetrics;
+    private final StatisticsCache statisticsCache;
+    private final SingleFlight singleFlight;
 
     @Value("${spring.application.name:WeatherApp}")
     private String applicationName;
@@ -131,6 +137,11 @@ public class MonitoringController {
         data.put("countries", locationRepository.findAllCountries().size());
         metrics.put("data", data);
 
+        // API read latency, steady state vs. while an ingest job is running
+        metrics.put("readLatency", readLatencyMetrics.snapshot());
+        metrics.put("statisticsCache", statisticsCache.stats());
+        metrics.put("singleFlight", singleFlight.stats());
+
         metrics.put("timestamp", LocalDateTime.now());
 
         return ResponseEntity.ok(metrics);
@@ -1,16 +1,33 @@
 package raf.shell.weatherapp.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import raf.shell.weatherapp.dto.ConditionCount;
 import raf.shell.weatherapp.dto.CountryStatistics;
 import raf.shell.weatherapp.dto.CountryTemperature;
 import raf.shell.weatherapp.dto.DashboardStatistics;
+import raf.shell.weatherapp.dto.DaylightStatistics;
+import raf.shell.weatherapp.dto.DistributionStatistics;
+import raf.shell.weatherapp.dto.UnitSystem;
 import raf.shell.weatherapp.dto.WeatherRecordDTO;
+import raf.shell.weatherapp.service.DatasetVersion;
+import raf.shell.weatherapp.service.DistributionStore;
+import raf.shell.weatherapp.service.StatisticsCache;
 import raf.shell.weatherapp.service.StatisticsService;
+import raf.shell.weatherapp.service.TimeWindow;
+import raf.shell.weatherapp.service.TopLocationsStore;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/statistics")
@@ -18,36 +35,196 @@ import java.util.List;
 public class StatisticsController {
 
     private final StatisticsService statisticsService;
+    private final StatisticsCache statisticsCache;
+    private final DatasetVersion datasetVersion;
+
+    @Value("${statistics.cache.max-age-seconds:10}")
+    private long maxAgeSeconds;
 
     @GetMapping("/dashboard")
-    public ResponseEntity<DashboardStatistics> getDashboardStatistics() {
-        return ResponseEntity.ok(statisticsService.getDashboardStatistics());
+    public ResponseEntity<DashboardStatistics> getDashboardStatistics(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // Partial results are neither cached nor tagged, so the next request retries them
+        return cached("dashboard", ifNoneMatch, statisticsService::getDashboardStatistics,
+                statistics -> !statistics.isPartial());
     }
 
+    // Optional from/to (ISO date-times, to exclusive) restrict both of these to a last_updated window
     @GetMapping("/conditions")
-    public ResponseEntity<List<ConditionCount>> getConditionDistribution() {
-        return ResponseEntity.ok(statisticsService.getConditionDistribution());
+    public ResponseEntity<List<ConditionCount>> getConditionDistribution(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        TimeWindow window;
+        try {
+            window = TimeWindow.of(from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (window == null) {
+            return cached("conditions", ifNoneMatch, () -> statisticsService.getConditionDistribution());
+        }
+        return cached("conditions:" + window, ifNoneMatch, () -> statisticsService.getConditionDistribution(window));
     }
 
     @GetMapping("/temperature-by-country")
-    public ResponseEntity<List<CountryTemperature>> getTemperatureByCountry() {
-        return ResponseEntity.ok(statisticsService.getTemperatureByCountry());
+    public ResponseEntity<List<CountryTemperature>> getTemperatureByCountry(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        TimeWindow window;
+        try {
+            window = TimeWindow.of(from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (window == null) {
+            return cached("temperature-by-country", ifNoneMatch, () -> statisticsService.getTemperatureByCountry());
+        }
+        return cached("temperature-by-country:" + window, ifNoneMatch,
+                () -> statisticsService.getTemperatureByCountry(window));
     }
 
     @GetMapping("/hottest")
     public ResponseEntity<List<WeatherRecordDTO>> getHottestLocations(
-            @RequestParam(defaultValue = "10") int limit) {
-        return ResponseEntity.ok(statisticsService.getHottestLocations(limit));
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) UnitSystem units,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        if (limit < 1 || limit > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cached("hottest:" + limit + ":" + units, ifNoneMatch,
+                () -> statisticsService.getHottestLocations(limit, units));
     }
 
     @GetMapping("/coldest")
     public ResponseEntity<List<WeatherRecordDTO>> getColdestLocations(
-            @RequestParam(defaultValue = "10") int limit) {
-        return ResponseEntity.ok(statisticsService.getColdestLocations(limit));
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) UnitSystem units,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        if (limit < 1 || limit > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cached("coldest:" + limit + ":" + units, ifNoneMatch,
+                () -> statisticsService.getColdestLocations(limit, units));
+    }
+
+    // Distinct locations ranked by a metric; reading=latest ranks each location's latest record instead of its extreme
+    @GetMapping("/top")
+    public ResponseEntity<List<WeatherRecordDTO>> getTopLocations(
+            @RequestParam(defaultValue = "temperature") String metric,
+            @RequestParam(defaultValue = "desc") String order,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "location") String distinct,
+            @RequestParam(defaultValue = "max") String reading,
+            @RequestParam(required = false) UnitSystem units,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        TopLocationsStore.Metric topMetric;
+        try {
+            topMetric = TopLocationsStore.Metric.valueOf(metric.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean highest = order.equalsIgnoreCase("desc");
+        boolean latest = reading.equalsIgnoreCase("latest");
+        if ((!highest && !order.equalsIgnoreCase("asc")) || (!latest && !reading.equalsIgnoreCase("max"))
+                || !distinct.equalsIgnoreCase("location") || k < 1 || k > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cached("top:" + topMetric + ":" + highest + ":" + k + ":" + latest + ":" + units, ifNoneMatch,
+                () -> statisticsService.getTopLocations(topMetric, highest, k, latest, units));
+    }
+
+    // Quantiles and an equal-width histogram of a metric, for all records or one country
+    @GetMapping("/distribution")
+    public ResponseEntity<DistributionStatistics> getDistribution(
+            @RequestParam(defaultValue = "temperature") String metric,
+            @RequestParam(required = false) String country,
+            @RequestParam(defaultValue = "10") int bins,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        DistributionStore.Metric distributionMetric = distributionMetric(metric);
+        if (distributionMetric == null || bins < 1 || bins > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cached("distribution:" + distributionMetric + ":" + country + ":" + bins, ifNoneMatch,
+                () -> statisticsService.getDistribution(distributionMetric, country, bins));
+    }
+
+    @GetMapping("/distribution/countries")
+    public ResponseEntity<List<DistributionStatistics>> getDistributionByCountry(
+            @RequestParam(defaultValue = "temperature") String metric,
+            @RequestParam(defaultValue = "10") int bins,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        DistributionStore.Metric distributionMetric = distributionMetric(metric);
+        if (distributionMetric == null || bins < 1 || bins > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cached("distribution:countries:" + distributionMetric + ":" + bins, ifNoneMatch,
+                () -> statisticsService.getDistributionByCountry(distributionMetric, bins));
+    }
+
+    private static DistributionStore.Metric distributionMetric(String metric) {
+        try {
+            return DistributionStore.Metric.valueOf(metric.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     @GetMapping("/countries")
-    public ResponseEntity<List<CountryStatistics>> getCountryStatistics() {
-        return ResponseEntity.ok(statisticsService.getCountryStatistics());
+    public ResponseEntity<List<CountryStatistics>> getCountryStatistics(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        return cached("countries", ifNoneMatch, statisticsService::getCountryStatistics);
+    }
+
+    // groupBy=country, or groupBy=latitude with bands of bandDegrees
+    @GetMapping("/daylight")
+    public ResponseEntity<List<DaylightStatistics>> getDaylightStatistics(
+            @RequestParam(defaultValue = "country") String groupBy,
+            @RequestParam(defaultValue = "10") int bandDegrees,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        if (groupBy.equalsIgnoreCase("country")) {
+            return cached("daylight:country", ifNoneMatch, statisticsService::getDaylightByCountry);
+        }
+        if (!groupBy.equalsIgnoreCase("latitude") || bandDegrees < 1 || bandDegrees > 90) {
+            return ResponseEntity.badRequest().build();
+        }
+        return cached("daylight:latitude:" + bandDegrees, ifNoneMatch,
+                () -> statisticsService.getDaylightByLatitude(bandDegrees));
+    }
+
+    private <T> ResponseEntity<T> cached(String key, String ifNoneMatch, Supplier<T> loader) {
+        return cached(key, ifNoneMatch, loader, value -> true);
+    }
+
+    // Every response here depends only on the dataset, so its version serves as the ETag
+    private <T> ResponseEntity<T> cached(String key, String ifNoneMatch, Supplier<T> loader, Predicate<T> cacheable) {
+        CacheControl cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePrivate().mustRevalidate();
+
+        String etag = datasetVersion.etag();
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        T body = statisticsCache.get(key, loader, cacheable);
+        if (!cacheable.test(body) || !etag.equals(datasetVersion.etag())) {
+            // Data changed while computing; the body may mix versions, so it gets no validator
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(body);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -1,13 +1,27 @@
 package raf.shell.weatherapp.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import raf.shell.weatherapp.dto.CursorPage;
+import raf.shell.weatherapp.dto.UnitSystem;
 import raf.shell.weatherapp.dto.WeatherRecordDTO;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.service.TimeWindow;
 import raf.shell.weatherapp.service.WeatherService;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @RestController
@@ -16,59 +30,172 @@ import java.util.stream.Collectors;
 public class WeatherController {
 
     private final WeatherService weatherService;
+    private final ObjectMapper objectMapper;
 
+    // count=false skips the total count and returns a Slice; units=metric|imperial drops the other unit system.
+    // from/to (ISO date-times, to exclusive) restrict last_updated and list newest first.
     @GetMapping
-    public ResponseEntity<Page<WeatherRecordDTO>> getAllRecords(
+    public ResponseEntity<Slice<WeatherRecordDTO>> getAllRecords(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
-        Page<WeatherRecordDTO> records = weatherService.getRecordsPaginated(page, size)
-                .map(WeatherRecordDTO::fromEntity);
-        return ResponseEntity.ok(records);
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "true") boolean count,
+            @RequestParam(required = false) UnitSystem units,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        TimeWindow window;
+        try {
+            window = TimeWindow.of(from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Slice<WeatherRecord> records;
+        if (window != null) {
+            records = count
+                    ? weatherService.getRecordsInWindow(window, page, size)
+                    : weatherService.getRecordsSliceInWindow(window, page, size);
+        } else {
+            records = count
+                    ? weatherService.getRecordsPaginated(page, size)
+                    : weatherService.getRecordsSlice(page, size);
+        }
+        return ResponseEntity.ok(records.map(record -> WeatherRecordDTO.fromEntity(record, units)));
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<WeatherRecordDTO>> scrollRecords(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) UnitSystem units) {
+        if (size < 1 || size > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(weatherService.getRecordsAfter(cursor, size)
+                    .map(record -> WeatherRecordDTO.fromEntity(record, units)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<WeatherRecordDTO> getRecordById(@PathVariable Long id) {
+    public ResponseEntity<WeatherRecordDTO> getRecordById(@PathVariable Long id,
+            @RequestParam(required = false) UnitSystem units) {
         return weatherService.getRecordById(id)
-                .map(WeatherRecordDTO::fromEntity)
+                .map(record -> WeatherRecordDTO.fromEntity(record, units))
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/country/{country}")
-    public ResponseEntity<List<WeatherRecordDTO>> getRecordsByCountry(@PathVariable String country) {
+    public ResponseEntity<List<WeatherRecordDTO>> getRecordsByCountry(@PathVariable String country,
+            @RequestParam(required = false) UnitSystem units) {
         List<WeatherRecordDTO> records = weatherService.getRecordsByCountry(country)
                 .stream()
-                .map(WeatherRecordDTO::fromEntity)
+                .map(record -> WeatherRecordDTO.fromEntity(record, units))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(records);
     }
 
+    @GetMapping(value = "/country/{country}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecordsByCountry(@PathVariable String country,
+            @RequestParam(required = false) UnitSystem units) {
+        return ndjson(units, sink -> weatherService.streamRecordsByCountry(country, sink));
+    }
+
     @GetMapping("/condition/{condition}")
-    public ResponseEntity<List<WeatherRecordDTO>> getRecordsByCondition(@PathVariable String condition) {
+    public ResponseEntity<List<WeatherRecordDTO>> getRecordsByCondition(@PathVariable String condition,
+            @RequestParam(required = false) UnitSystem units) {
         List<WeatherRecordDTO> records = weatherService.getRecordsByCondition(condition)
                 .stream()
-                .map(WeatherRecordDTO::fromEntity)
+                .map(record -> WeatherRecordDTO.fromEntity(record, units))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(records);
     }
 
+    @GetMapping(value = "/condition/{condition}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecordsByCondition(@PathVariable String condition,
+            @RequestParam(required = false) UnitSystem units) {
+        return ndjson(units, sink -> weatherService.streamRecordsByCondition(condition, sink));
+    }
+
     @GetMapping("/temperature")
     public ResponseEntity<List<WeatherRecordDTO>> getRecordsByTemperatureRange(
             @RequestParam Double min,
-            @RequestParam Double max) {
+            @RequestParam Double max,
+            @RequestParam(required = false) UnitSystem units) {
         List<WeatherRecordDTO> records = weatherService.getRecordsByTemperatureRange(min, max)
                 .stream()
-                .map(WeatherRecordDTO::fromEntity)
+                .map(record -> WeatherRecordDTO.fromEntity(record, units))
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(records);
+    }
+
+    @GetMapping(value = "/temperature", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecordsByTemperatureRange(
+            @RequestParam Double min,
+            @RequestParam Double max,
+            @RequestParam(required = false) UnitSystem units) {
+        return ndjson(units, sink -> weatherService.streamRecordsByTemperatureRange(min, max, sink));
+    }
+
+    // Latest record of each location inside the box; minLon > maxLon wraps across the antimeridian
+    @GetMapping("/bbox")
+    public ResponseEntity<List<WeatherRecordDTO>> getLatestInBox(
+            @RequestParam double minLat,
+            @RequestParam double maxLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLon,
+            @RequestParam(defaultValue = "500") int limit,
+            @RequestParam(required = false) UnitSystem units) {
+        // Negated, so NaN fails the range checks too
+        if (!(Math.abs(minLat) <= 90) || !(Math.abs(maxLat) <= 90) || minLat > maxLat
+                || !(Math.abs(minLon) <= 180) || !(Math.abs(maxLon) <= 180) || limit < 1 || limit > 5000) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<WeatherRecordDTO> records = weatherService.getLatestInBox(minLat, maxLat, minLon, maxLon, limit)
+                .stream()
+                .map(record -> WeatherRecordDTO.fromEntity(record, units))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(records);
     }
 
     @GetMapping("/location/{locationId}")
-    public ResponseEntity<List<WeatherRecordDTO>> getRecordsByLocation(@PathVariable Long locationId) {
+    public ResponseEntity<List<WeatherRecordDTO>> getRecordsByLocation(@PathVariable Long locationId,
+            @RequestParam(required = false) UnitSystem units) {
         List<WeatherRecordDTO> records = weatherService.getRecordsByLocationId(locationId)
                 .stream()
-                .map(WeatherRecordDTO::fromEntity)
+                .map(record -> WeatherRecordDTO.fromEntity(record, units))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(records);
     }
+
+    @GetMapping(value = "/location/{locationId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecordsByLocation(@PathVariable Long locationId,
+            @RequestParam(required = false) UnitSystem units) {
+        return ndjson(units, sink -> weatherService.streamRecordsByLocationId(locationId, sink));
+    }
+
+    // One JSON object per line, written as rows arrive from the database
+    private ResponseEntity<StreamingResponseBody> ndjson(UnitSystem units, Consumer<Consumer<WeatherRecord>> query) {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+            try {
+                query.accept(record -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(WeatherRecordDTO.fromEntity(record, units)));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
@@ -0,0 +1,63 @@
+package raf.shell.weatherapp.dictionary;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * JPA converters storing string attributes as {@link StringDictionary} codes. Hibernate obtains
+ * them from the Spring context, so the dictionary is constructor-injected.
+ */
+public final class DictionaryConverters {
+
+    private DictionaryConverters() {
+    }
+
+    abstract static class DictionaryConverter implements AttributeConverter<String, Integer> {
+
+        private final StringDictionary dictionary;
+        private final DictionaryKind kind;
+
+        DictionaryConverter(StringDictionary dictionary, DictionaryKind kind) {
+            this.dictionary = dictionary;
+            this.kind = kind;
+        }
+
+        @Override
+        public Integer convertToDatabaseColumn(String value) {
+            return dictionary.encode(kind, value);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Integer code) {
+            return dictionary.decode(code);
+        }
+    }
+
+    @Converter
+    public static class Condition extends DictionaryConverter {
+        public Condition(StringDictionary dictionary) {
+            super(dictionary, DictionaryKind.CONDITION);
+        }
+    }
+
+    @Converter
+    public static class WindDirection extends DictionaryConverter {
+        public WindDirection(StringDictionary dictionary) {
+            super(dictionary, DictionaryKind.WIND_DIRECTION);
+        }
+    }
+
+    @Converter
+    public static class MoonPhase extends DictionaryConverter {
+        public MoonPhase(StringDictionary dictionary) {
+            super(dictionary, DictionaryKind.MOON_PHASE);
+        }
+    }
+
+    @Converter
+    public static class Timezone extends DictionaryConverter {
+        public Timezone(StringDictionary dictionary) {
+            super(dictionary, DictionaryKind.TIMEZONE);
+        }
+    }
+}
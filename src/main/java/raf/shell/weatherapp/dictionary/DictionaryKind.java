@@ -0,0 +1,11 @@
+package raf.shell.weatherapp.dictionary;
+
+/**
+ * Low-cardinality text columns stored as codes into string_dictionary.
+ */
+public enum DictionaryKind {
+    CONDITION,
+    WIND_DIRECTION,
+    MOON_PHASE,
+    TIMEZONE
+}
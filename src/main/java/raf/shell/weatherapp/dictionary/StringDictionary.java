@@ -0,0 +1,104 @@
+package raf.shell.weatherapp.dictionary;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bidirectional mapping between repeated strings and the small integer codes stored in their
+ * place. Entries live in the string_dictionary table and are all cached in memory; a value
+ * seen for the first time gets a new row. Codes are unique across kinds.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StringDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Map<DictionaryKind, Map<String, Integer>> codes = new EnumMap<>(DictionaryKind.class);
+    private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void load() {
+        for (DictionaryKind kind : DictionaryKind.values()) {
+            codes.put(kind, new ConcurrentHashMap<>());
+        }
+        // Binary collation, so values differing only in case get their own codes
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS string_dictionary (" +
+                "id INT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                "kind VARCHAR(32) NOT NULL, " +
+                "value VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL, " +
+                "UNIQUE KEY uk_kind_value (kind, value))");
+        jdbcTemplate.query("SELECT id, kind, value FROM string_dictionary",
+                rs -> cache(DictionaryKind.valueOf(rs.getString("kind")), rs.getString("value"), rs.getInt("id")));
+        log.info("Loaded {} string dictionary entries", values.size());
+    }
+
+    // Registers the value if it has no code yet
+    public Integer encode(DictionaryKind kind, String value) {
+        if (value == null) return null;
+        Integer code = codes.get(kind).get(value);
+        return code != null ? code : register(kind, value);
+    }
+
+    // Whether any stored row can hold the value; lets lookups skip queries that cannot match
+    public boolean contains(DictionaryKind kind, String value) {
+        return value != null && codes.get(kind).containsKey(value);
+    }
+
+    public String decode(Integer code) {
+        if (code == null) return null;
+        String value = values.get(code);
+        return value != null ? value : reload(code);
+    }
+
+    // Not synchronized: the transaction needs a second connection, and a caller holding one while
+    // waiting on a monitor could starve the pool. Racing registrations of a value read the same row.
+    private Integer register(DictionaryKind kind, String value) {
+        // Own transaction, so a rolled-back load cannot leave a cached code without its row
+        Integer code = ownTransaction().execute(status -> {
+            jdbcTemplate.update("INSERT IGNORE INTO string_dictionary (kind, value) VALUES (?, ?)", kind.name(), value);
+            return jdbcTemplate.queryForObject("SELECT id FROM string_dictionary WHERE kind = ? AND value = ?",
+                    Integer.class, kind.name(), value);
+        });
+        cache(kind, value, code);
+        return code;
+    }
+
+    // A code registered by another instance after this one loaded the table. Own connection, since
+    // callers decode while streaming rows, and Connector/J allows no other query on a connection
+    // whose streaming result set is still open.
+    private String reload(Integer code) {
+        List<String[]> rows = ownTransaction().execute(status -> jdbcTemplate.query(
+                "SELECT kind, value FROM string_dictionary WHERE id = ?",
+                (rs, rowNum) -> new String[]{rs.getString("kind"), rs.getString("value")}, code));
+        if (rows.isEmpty()) {
+            throw new IllegalStateException("Unknown string dictionary code " + code);
+        }
+        cache(DictionaryKind.valueOf(rows.get(0)[0]), rows.get(0)[1], code);
+        return rows.get(0)[1];
+    }
+
+    private TransactionTemplate ownTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    private void cache(DictionaryKind kind, String value, int code) {
+        values.put(code, value);
+        codes.get(kind).put(value, code);
+    }
+}
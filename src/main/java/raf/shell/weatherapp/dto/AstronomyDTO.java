@@ -15,18 +15,28 @@ public class AstronomyDTO {
     private String sunset;
     private String moonrise;
     private String moonset;
+    private Integer dayLengthMinutes;
     private String moonPhase;
     private Integer moonIllumination;
 
     public static AstronomyDTO fromEntity(Astronomy astronomy) {
         if (astronomy == null) return null;
         return AstronomyDTO.builder()
-                .sunrise(astronomy.getSunrise())
-                .sunset(astronomy.getSunset())
-                .moonrise(astronomy.getMoonrise())
-                .moonset(astronomy.getMoonset())
+                .sunrise(clockTime(astronomy.getSunriseMinutes()))
+                .sunset(clockTime(astronomy.getSunsetMinutes()))
+                .moonrise(clockTime(astronomy.getMoonriseMinutes()))
+                .moonset(clockTime(astronomy.getMoonsetMinutes()))
+                .dayLengthMinutes(astronomy.getDayLengthMinutes() != null ? astronomy.getDayLengthMinutes().intValue() : null)
                 .moonPhase(astronomy.getMoonPhase())
                 .moonIllumination(astronomy.getMoonIllumination())
                 .build();
     }
+
+    // Same "06:04 AM" format as the source data. Null when not stored: a "No moonrise" marker and a
+    // missing or unparseable value end up alike at ingest, so neither may be reported as the other.
+    private static String clockTime(Short minutes) {
+        if (minutes == null) return null;
+        int hour = minutes / 60 % 12;
+        return String.format("%02d:%02d %s", hour == 0 ? 12 : hour, minutes % 60, minutes < 12 * 60 ? "AM" : "PM");
+    }
 }
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -22,4 +23,8 @@ public class DashboardStatistics {
     private List<CountryTemperature> temperatureByCountry;
     private List<WeatherRecordDTO> hottestLocations;
     private List<WeatherRecordDTO> coldestLocations;
+    // Sub-queries that failed or timed out; their fields are null
+    private boolean partial;
+    private List<String> failedQueries;
+    private Map<String, Long> queryMillis;
 }
@@ -0,0 +1,20 @@
+package raf.shell.weatherapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Grouped either by country or by latitude band [latitudeFrom, latitudeTo)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DaylightStatistics {
+    private String country;
+    private Integer latitudeFrom;
+    private Integer latitudeTo;
+    private Long recordCount;
+    private Double averageDayLengthMinutes;
+    private Double averageDaylightHours;
+}
@@ -0,0 +1,33 @@
+package raf.shell.weatherapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Sketched distribution of one metric, for all records or one country. Count, min and max are
+ * exact; quantiles and bin counts are estimates whose rank is off by at most rankError and
+ * histogramError (as fractions of count) with 99% confidence.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistributionStatistics {
+    private String metric;
+    private String country;
+    private Long count;
+    private Double min;
+    private Double p5;
+    private Double p25;
+    private Double median;
+    private Double p75;
+    private Double p95;
+    private Double max;
+    private List<HistogramBin> histogram;
+    private Double rankError;
+    private Double histogramError;
+}
@@ -0,0 +1,15 @@
+package raf.shell.weatherapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Values in [from, to); the last bin of a histogram also includes its upper bound
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistogramBin {
+    private Double from;
+    private Double to;
+    private Long count;
+}
@@ -0,0 +1,21 @@
+package raf.shell.weatherapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestFileStatus {
+    private String path;
+    private String state;
+    private long bytesTotal;
+    private long bytesRead;
+    private double progressPercentage;
+    private long rowsParsed;
+    private long rowsPersisted;
+    private long rowsFailed;
+}
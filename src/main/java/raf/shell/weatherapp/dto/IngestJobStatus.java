@@ -0,0 +1,36 @@
+package raf.shell.weatherapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestJobStatus {
+    private String id;
+    private String state;
+    private String source;
+    private String mode;
+    private String message;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private boolean cancelRequested;
+    private long rowsParsed;
+    private long rowsPersisted;
+    private long rowsFailed;
+    private long rowsSkipped;
+    private double rowsPerSecond;
+    private double progressPercentage;
+    private Long etaSeconds;
+    private Map<String, Long> phaseMillis;
+    private List<IngestFileStatus> files;
+    private List<String> errors;
+}
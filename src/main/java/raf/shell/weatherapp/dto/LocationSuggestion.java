@@ -0,0 +1,16 @@
+package raf.shell.weatherapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// recordCount is null when the suggestion came from the database rather than the search index
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationSuggestion {
+    private Long id;
+    private String locationName;
+    private String country;
+    private Long recordCount;
+}
@@ -0,0 +1,17 @@
+package raf.shell.weatherapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A location near the requested point with its latest record, if it has any
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyLocation {
+    private LocationDTO location;
+    private Double distanceKm;
+    private WeatherRecordDTO latest;
+}
@@ -0,0 +1,9 @@
+package raf.shell.weatherapp.dto;
+
+/**
+ * Units requested with {@code ?units=}; without it responses carry both.
+ */
+public enum UnitSystem {
+    METRIC,
+    IMPERIAL
+}
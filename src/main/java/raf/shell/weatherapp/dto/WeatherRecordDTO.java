@@ -6,6 +6,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import raf.shell.weatherapp.entity.WeatherRecord;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 
 @Data
@@ -13,6 +15,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class WeatherRecordDTO {
+
+    private static final double KM_PER_MILE = 1.609344;
+    private static final double MM_PER_INCH = 25.4;
+    private static final double INCHES_PER_MB = 0.0295299830714;
+
     private Long id;
     private LocationDTO location;
     private LocalDateTime lastUpdated;
@@ -39,31 +46,59 @@ public class WeatherRecordDTO {
     private AstronomyDTO astronomy;
 
     public static WeatherRecordDTO fromEntity(WeatherRecord record) {
-        return WeatherRecordDTO.builder()
+        return fromEntity(record, null);
+    }
+
+    /**
+     * Only metric values are stored. Imperial ones are derived here and rounded like the source
+     * CSV, degrees Fahrenheit and mph to 0.1 and inches to 0.01, so they can differ from the CSV
+     * in the last digit. A null unit system fills in both.
+     */
+    public static WeatherRecordDTO fromEntity(WeatherRecord record, UnitSystem units) {
+        WeatherRecordDTO dto = WeatherRecordDTO.builder()
                 .id(record.getId())
                 .location(LocationDTO.fromEntity(record.getLocation()))
                 .lastUpdated(record.getLastUpdated())
-                .temperatureCelsius(record.getTemperatureCelsius())
-                .temperatureFahrenheit(record.getTemperatureFahrenheit())
-                .feelsLikeCelsius(record.getFeelsLikeCelsius())
-                .feelsLikeFahrenheit(record.getFeelsLikeFahrenheit())
                 .conditionText(record.getConditionText())
                 .humidity(record.getHumidity())
                 .cloud(record.getCloud())
-                .visibilityKm(record.getVisibilityKm())
                 .uvIndex(record.getUvIndex())
-                .windMph(record.getWindMph())
-                .windKph(record.getWindKph())
                 .windDegree(record.getWindDegree())
                 .windDirection(record.getWindDirection())
-                .gustMph(record.getGustMph())
-                .gustKph(record.getGustKph())
-                .pressureMb(record.getPressureMb())
-                .pressureIn(record.getPressureIn())
-                .precipMm(record.getPrecipMm())
-                .precipIn(record.getPrecipIn())
                 .airQuality(AirQualityDTO.fromEntity(record.getAirQuality()))
                 .astronomy(AstronomyDTO.fromEntity(record.getAstronomy()))
                 .build();
+
+        if (units != UnitSystem.IMPERIAL) {
+            dto.setTemperatureCelsius(record.getTemperatureCelsius());
+            dto.setFeelsLikeCelsius(record.getFeelsLikeCelsius());
+            dto.setVisibilityKm(record.getVisibilityKm());
+            dto.setWindKph(record.getWindKph());
+            dto.setGustKph(record.getGustKph());
+            dto.setPressureMb(record.getPressureMb());
+            dto.setPrecipMm(record.getPrecipMm());
+        }
+        if (units != UnitSystem.METRIC) {
+            dto.setTemperatureFahrenheit(fahrenheit(record.getTemperatureCelsius()));
+            dto.setFeelsLikeFahrenheit(fahrenheit(record.getFeelsLikeCelsius()));
+            dto.setWindMph(round(divide(record.getWindKph(), KM_PER_MILE), 1));
+            dto.setGustMph(round(divide(record.getGustKph(), KM_PER_MILE), 1));
+            dto.setPressureIn(round(record.getPressureMb() != null ? record.getPressureMb() * INCHES_PER_MB : null, 2));
+            dto.setPrecipIn(round(divide(record.getPrecipMm(), MM_PER_INCH), 2));
+        }
+        return dto;
+    }
+
+    private static Double fahrenheit(Double celsius) {
+        return celsius != null ? round(celsius * 9 / 5 + 32, 1) : null;
+    }
+
+    private static Double divide(Double value, double divisor) {
+        return value != null ? value / divisor : null;
+    }
+
+    private static Double round(Double value, int decimals) {
+        if (value == null || value.isNaN() || value.isInfinite()) return value;
+        return BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).doubleValue();
     }
 }
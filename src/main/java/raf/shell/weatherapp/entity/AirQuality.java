@@ -5,17 +5,13 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-@Entity
-@Table(name = "air_quality")
+// Stored as columns of weather_records
+@Embeddable
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class AirQuality {
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-
     @Column(name = "carbon_monoxide")
     private Double carbonMonoxide;
 
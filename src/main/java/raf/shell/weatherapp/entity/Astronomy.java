@@ -4,27 +4,33 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import raf.shell.weatherapp.dictionary.DictionaryConverters;
 
-@Entity
-@Table(name = "astronomy")
+// Stored as columns of weather_records
+@Embeddable
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Astronomy {
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    // Minutes after local midnight, parsed from the CSV's "06:04 AM"; null for "No moonrise" and the like
+    @Column(name = "sunrise_minutes")
+    private Short sunriseMinutes;
 
-    private String sunrise;
+    @Column(name = "sunset_minutes")
+    private Short sunsetMinutes;
 
-    private String sunset;
+    @Column(name = "moonrise_minutes")
+    private Short moonriseMinutes;
 
-    private String moonrise;
+    @Column(name = "moonset_minutes")
+    private Short moonsetMinutes;
 
-    private String moonset;
+    @Column(name = "day_length_minutes")
+    private Short dayLengthMinutes;
 
-    @Column(name = "moon_phase")
+    @Convert(converter = DictionaryConverters.MoonPhase.class)
+    @Column(name = "moon_phase_code")
     private String moonPhase;
 
     @Column(name = "moon_illumination")
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import raf.shell.weatherapp.dictionary.DictionaryConverters;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,6 +32,8 @@ public class Location {
 
     private Double longitude;
 
+    @Convert(converter = DictionaryConverters.Timezone.class)
+    @Column(name = "timezone_code")
     private String timezone;
 
     @OneToMany(mappedBy = "location", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
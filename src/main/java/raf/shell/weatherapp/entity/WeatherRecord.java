@@ -4,58 +4,67 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import raf.shell.weatherapp.dictionary.DictionaryConverters;
 
 import java.time.LocalDateTime;
 
 @Entity
+// Everything WeatherRecordDTO reads, loaded in the same statement as the record
+@NamedEntityGraph(name = WeatherRecord.DETAILS_GRAPH, attributeNodes = {
+    @NamedAttributeNode("location")
+})
 @Table(name = "weather_records", indexes = {
-    @Index(name = "idx_condition", columnList = "condition_text"),
-    @Index(name = "idx_temperature", columnList = "temperature_celsius")
+    @Index(name = "idx_condition_code", columnList = "condition_code"),
+    @Index(name = "idx_temperature", columnList = "temperature_celsius"),
+    @Index(name = "idx_last_updated_epoch", columnList = "last_updated_epoch, id"),
+    @Index(name = "idx_last_updated", columnList = "last_updated, id")
+}, uniqueConstraints = {
+    // Unique keys of a partitioned table have to include the partitioning column
+    @UniqueConstraint(name = "uk_location_epoch", columnNames = {"location_id", "last_updated_epoch", "last_updated"})
 })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class WeatherRecord {
 
+    public static final String DETAILS_GRAPH = "WeatherRecord.details";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     // Relationships
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "location_id", nullable = false)
+    // Partitioned InnoDB tables cannot have foreign keys
+    @JoinColumn(name = "location_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Location location;
 
-    @OneToOne(cascade = CascadeType.ALL)
-    @JoinColumn(name = "air_quality_id")
+    // Null when all of the group's columns are null
+    @Embedded
     private AirQuality airQuality;
 
-    @OneToOne(cascade = CascadeType.ALL)
-    @JoinColumn(name = "astronomy_id")
+    @Embedded
     private Astronomy astronomy;
 
     // Timestamps
     @Column(name = "last_updated_epoch")
     private Long lastUpdatedEpoch;
 
-    @Column(name = "last_updated")
+    // Partitioning column, see WeatherPartitions
+    @Column(name = "last_updated", nullable = false)
     private LocalDateTime lastUpdated;
 
-    // Temperature
+    // Temperature; only metric units are stored, WeatherRecordDTO derives the imperial ones
     @Column(name = "temperature_celsius")
     private Double temperatureCelsius;
 
-    @Column(name = "temperature_fahrenheit")
-    private Double temperatureFahrenheit;
-
     @Column(name = "feels_like_celsius")
     private Double feelsLikeCelsius;
 
-    @Column(name = "feels_like_fahrenheit")
-    private Double feelsLikeFahrenheit;
-
     // Weather Condition
-    @Column(name = "condition_text")
+    // Stored as a string dictionary code, like the other repeated text columns
+    @Convert(converter = DictionaryConverters.Condition.class)
+    @Column(name = "condition_code")
     private String conditionText;
 
     private Integer humidity;
@@ -65,28 +74,20 @@ public class WeatherRecord {
     @Column(name = "visibility_km")
     private Double visibilityKm;
 
-    @Column(name = "visibility_miles")
-    private Double visibilityMiles;
-
     @Column(name = "uv_index")
     private Double uvIndex;
 
     // Wind
-    @Column(name = "wind_mph")
-    private Double windMph;
-
     @Column(name = "wind_kph")
     private Double windKph;
 
     @Column(name = "wind_degree")
     private Integer windDegree;
 
-    @Column(name = "wind_direction")
+    @Convert(converter = DictionaryConverters.WindDirection.class)
+    @Column(name = "wind_direction_code")
     private String windDirection;
 
-    @Column(name = "gust_mph")
-    private Double gustMph;
-
     @Column(name = "gust_kph")
     private Double gustKph;
 
@@ -94,13 +95,7 @@ public class WeatherRecord {
     @Column(name = "pressure_mb")
     private Double pressureMb;
 
-    @Column(name = "pressure_in")
-    private Double pressureIn;
-
     // Precipitation
     @Column(name = "precip_mm")
     private Double precipMm;
-
-    @Column(name = "precip_in")
-    private Double precipIn;
 }
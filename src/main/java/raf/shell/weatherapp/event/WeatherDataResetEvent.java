@@ -0,0 +1,8 @@
+package raf.shell.weatherapp.event;
+
+/**
+ * The stored dataset was replaced or is being read for the first time; in-memory views
+ * derived from it must be rebuilt from the database. Published on the ingest thread.
+ */
+public record WeatherDataResetEvent() {
+}
@@ -0,0 +1,13 @@
+package raf.shell.weatherapp.event;
+
+import raf.shell.weatherapp.entity.WeatherRecord;
+
+import java.util.List;
+
+/**
+ * Records that were just committed to the live tables. Published synchronously after each
+ * ingest batch, possibly from several shard threads at once. The records' locations are
+ * detached, so listeners must not touch lazy associations.
+ */
+public record WeatherRecordsAddedEvent(List<WeatherRecord> records) {
+}
@@ -0,0 +1,86 @@
+package raf.shell.weatherapp.ingest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Open-addressing table from UTF-8 byte ranges to canonical Strings. A hit allocates nothing.
+ * Not thread-safe; the tokenizer keeps one per parser thread.
+ */
+final class ByteStringInterner {
+
+    // Columns routed through here are low-cardinality; stop caching if one turns out not to be
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    private byte[][] keys = new byte[256][];
+    private String[] values = new String[256];
+    private int[] hashes = new int[256];
+    private int size;
+
+    String intern(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        int hash = hash(buffer, start, end);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+
+        byte[] key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && matches(key, buffer, start, length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8).intern();
+        if (size < MAX_ENTRIES) {
+            keys[slot] = bytes;
+            values[slot] = value;
+            hashes[slot] = hash;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+        return value;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int length) {
+        if (key.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(start + i)) return false;
+        }
+        return true;
+    }
+
+    private void resize() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+
+        int capacity = oldKeys.length * 2;
+        keys = new byte[capacity][];
+        values = new String[capacity];
+        hashes = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package raf.shell.weatherapp.ingest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Reports how many bytes have been read from the wrapped stream, for progress estimates.
+ * Wrapped around the file itself, so compressed inputs report compressed bytes.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private final LongConsumer onRead;
+
+    public CountingInputStream(InputStream in, LongConsumer onRead) {
+        super(in);
+        this.onRead = onRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            onRead.accept(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        if (count > 0) {
+            onRead.accept(count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            onRead.accept(skipped);
+        }
+        return skipped;
+    }
+}
@@ -0,0 +1,229 @@
+package raf.shell.weatherapp.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reader -> parser pool -> batching writer, joined by bounded queues.
+ * The writer runs on the calling thread so it keeps the caller's transaction context.
+ */
+@Slf4j
+public class CsvIngestPipeline<R, T> {
+
+    @FunctionalInterface
+    public interface RowSource<R> {
+        R readNext() throws Exception;
+    }
+
+    /**
+     * Progress and cancellation hooks. Called from the reader, parser and writer threads.
+     */
+    public interface Listener {
+        default void rowsParsed(int count) {
+        }
+
+        default void rowFailed(long rowNumber, Exception e) {
+        }
+
+        default void rowsWritten(int count) {
+        }
+
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private static final Listener NO_OP_LISTENER = new Listener() {
+    };
+
+    private record RowChunk<R>(long firstRowNumber, List<R> rows) {
+    }
+
+    private final int parserThreads;
+    private final int queueCapacity;
+    private final int chunkSize;
+    private final int batchSize;
+
+    public CsvIngestPipeline(int parserThreads, int queueCapacity, int chunkSize, int batchSize) {
+        this.parserThreads = Math.max(1, parserThreads);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Streams every row from the source through the parser and hands batches of parsed
+     * items to the writer. Returns the number of items written.
+     */
+    public long run(RowSource<R> source, Function<R, T> parser, Consumer<List<T>> writer) {
+        return run(source, parser, writer, NO_OP_LISTENER);
+    }
+
+    /**
+     * Same as {@link #run(RowSource, Function, Consumer)}, reporting progress to the listener.
+     * Throws {@link CancellationException} once the listener reports cancellation.
+     */
+    public long run(RowSource<R> source, Function<R, T> parser, Consumer<List<T>> writer, Listener listener) {
+        BlockingQueue<RowChunk<R>> rowQueue = new ArrayBlockingQueue<>(queueCapacity);
+        RowChunk<R> endOfRows = new RowChunk<>(-1, List.of());
+        BlockingQueue<List<T>> parsedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        List<T> endOfParsed = new ArrayList<>(0);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger activeParsers = new AtomicInteger(parserThreads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parserThreads + 1, namedThreadFactory());
+        try {
+            executor.execute(() -> readRows(source, rowQueue, endOfRows, failure, listener));
+            for (int i = 0; i < parserThreads; i++) {
+                executor.execute(() -> parseRows(parser, rowQueue, endOfRows, parsedQueue, endOfParsed, activeParsers,
+                        failure, listener));
+            }
+
+            long written = 0;
+            List<T> batch = new ArrayList<>(batchSize);
+            while (true) {
+                List<T> parsed = parsedQueue.take();
+                if (parsed == endOfParsed) {
+                    break;
+                }
+                if (failure.get() != null) {
+                    break;
+                }
+                for (T item : parsed) {
+                    batch.add(item);
+                    if (batch.size() >= batchSize) {
+                        if (listener.isCancelled()) {
+                            throw new CancellationException("CSV ingest cancelled after " + written + " records");
+                        }
+                        writer.accept(batch);
+                        written += batch.size();
+                        listener.rowsWritten(batch.size());
+                        log.info("Loaded {} records...", written);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            if (failure.get() != null) {
+                throw new RuntimeException("CSV ingest failed", failure.get());
+            }
+            if (listener.isCancelled()) {
+                throw new CancellationException("CSV ingest cancelled after " + written + " records");
+            }
+            if (!batch.isEmpty()) {
+                writer.accept(batch);
+                written += batch.size();
+                listener.rowsWritten(batch.size());
+            }
+            return written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("CSV ingest interrupted", e);
+        } finally {
+            // Unblocks the reader and parsers if the writer failed mid-stream
+            executor.shutdownNow();
+        }
+    }
+
+    private void readRows(RowSource<R> source, BlockingQueue<RowChunk<R>> rowQueue, RowChunk<R> endOfRows,
+                          AtomicReference<Throwable> failure, Listener listener) {
+        try {
+            long rowNumber = 1;
+            List<R> rows = new ArrayList<>(chunkSize);
+            R row;
+            while (!listener.isCancelled() && (row = source.readNext()) != null) {
+                rows.add(row);
+                if (rows.size() >= chunkSize) {
+                    rowQueue.put(new RowChunk<>(rowNumber, rows));
+                    rowNumber += rows.size();
+                    rows = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!rows.isEmpty()) {
+                rowQueue.put(new RowChunk<>(rowNumber, rows));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            log.error("Error reading CSV rows", e);
+            failure.compareAndSet(null, e);
+        } finally {
+            // Sent however the reader stops, so no parser waits for rows that will never come
+            if (!Thread.currentThread().isInterrupted()) {
+                try {
+                    for (int i = 0; i < parserThreads; i++) {
+                        rowQueue.put(endOfRows);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void parseRows(Function<R, T> parser, BlockingQueue<RowChunk<R>> rowQueue, RowChunk<R> endOfRows,
+                           BlockingQueue<List<T>> parsedQueue, List<T> endOfParsed, AtomicInteger activeParsers,
+                           AtomicReference<Throwable> failure, Listener listener) {
+        boolean died = false;
+        try {
+            while (true) {
+                RowChunk<R> chunk = rowQueue.take();
+                if (chunk == endOfRows) {
+                    return;
+                }
+
+                List<T> parsed = new ArrayList<>(chunk.rows().size());
+                long rowNumber = chunk.firstRowNumber();
+                for (R row : chunk.rows()) {
+                    try {
+                        T item = parser.apply(row);
+                        if (item != null) {
+                            parsed.add(item);
+                        }
+                    } catch (Exception e) {
+                        log.warn("Error parsing row {}: {}", rowNumber, e.getMessage());
+                        listener.rowFailed(rowNumber, e);
+                    }
+                    rowNumber++;
+                }
+                listener.rowsParsed(chunk.rows().size());
+                parsedQueue.put(parsed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            log.error("CSV parser thread failed", e);
+            failure.compareAndSet(null, e);
+            died = true;
+        } finally {
+            // The last parser out, or one that died, wakes the writer; a failure makes it stop there
+            if ((activeParsers.decrementAndGet() == 0 || died) && !Thread.currentThread().isInterrupted()) {
+                try {
+                    parsedQueue.put(endOfParsed);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "csv-ingest-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
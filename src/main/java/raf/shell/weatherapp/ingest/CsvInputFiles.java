@@ -0,0 +1,145 @@
+package raf.shell.weatherapp.ingest;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Resolves csv.file.path (a file, a directory or a glob) into the shards to load, and opens
+ * .csv, .csv.gz and .csv.zst files as decompressed character streams.
+ */
+public final class CsvInputFiles {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CsvInputFiles() {
+    }
+
+    public static List<Path> resolve(String location) throws IOException {
+        if (isGlob(location)) {
+            Path base = globBase(location);
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + absoluteGlob(location));
+            if (!Files.isDirectory(base)) {
+                return List.of();
+            }
+            try (Stream<Path> paths = Files.walk(base)) {
+                return sorted(paths.filter(path -> matcher.matches(path) && Files.isRegularFile(path) && isSupported(path)));
+            }
+        }
+
+        Path path = Path.of(location);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> paths = Files.list(path)) {
+                return sorted(paths.filter(file -> Files.isRegularFile(file) && isSupported(file)));
+            }
+        }
+        if (!Files.exists(path)) {
+            throw new IOException("CSV input not found: " + location);
+        }
+        return List.of(path);
+    }
+
+    // Directory to watch or walk for the given location
+    public static Path baseDirectory(String location) {
+        if (isGlob(location)) {
+            return globBase(location);
+        }
+        Path path = Path.of(location).toAbsolutePath();
+        return Files.isDirectory(path) ? path : path.getParent();
+    }
+
+    // Whether a file in the base directory belongs to the given location
+    public static PathMatcher matcher(String location) {
+        if (isGlob(location)) {
+            PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + absoluteGlob(location));
+            return path -> glob.matches(path.toAbsolutePath()) && isSupported(path);
+        }
+        Path path = Path.of(location).toAbsolutePath();
+        if (Files.isDirectory(path)) {
+            return CsvInputFiles::isSupported;
+        }
+        return candidate -> candidate.toAbsolutePath().equals(path);
+    }
+
+    public static boolean isSupported(Path path) {
+        String name = fileName(path);
+        return name.endsWith(".csv") || name.endsWith(".csv.gz") || name.endsWith(".csv.zst");
+    }
+
+    public static boolean isCompressed(Path path) {
+        String name = fileName(path);
+        return name.endsWith(".gz") || name.endsWith(".zst");
+    }
+
+    /**
+     * Opens the file as UTF-8 text, decompressing by extension. The consumer is told how many
+     * bytes were read from disk.
+     */
+    public static Reader openReader(Path path, LongConsumer bytesRead) throws IOException {
+        InputStream in = new BufferedInputStream(
+                new CountingInputStream(Files.newInputStream(path), bytesRead), BUFFER_SIZE);
+        try {
+            String name = fileName(path);
+            if (name.endsWith(".gz")) {
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+            } else if (name.endsWith(".zst")) {
+                in = new BufferedInputStream(new ZstdInputStream(in), BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isGlob(String location) {
+        return location.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    // Walked paths are absolute, so relative globs are anchored at the working directory
+    private static String absoluteGlob(String location) {
+        if (Path.of(globBaseString(location)).isAbsolute()) {
+            return location;
+        }
+        return Path.of("").toAbsolutePath() + "/" + location;
+    }
+
+    // Longest leading part of the glob without wildcards
+    private static Path globBase(String location) {
+        return Path.of(globBaseString(location)).toAbsolutePath();
+    }
+
+    private static String globBaseString(String location) {
+        StringBuilder base = new StringBuilder();
+        for (String part : location.split("/", -1)) {
+            if (isGlob(part)) break;
+            base.append(part).append('/');
+        }
+        return base.length() > 0 ? base.toString() : ".";
+    }
+
+    private static String fileName(Path path) {
+        Path name = path.getFileName();
+        return name != null ? name.toString().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static List<Path> sorted(Stream<Path> paths) {
+        return paths.sorted(Comparator.comparing(Path::toString)).collect(Collectors.toList());
+    }
+}
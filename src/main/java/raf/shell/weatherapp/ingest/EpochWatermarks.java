@@ -0,0 +1,38 @@
+package raf.shell.weatherapp.ingest;
+
+import java.util.Map;
+
+/**
+ * Load filter on the latest epoch stored per location when the load started: rows at or below it
+ * are already in the table. One entry per location however large the input, and independent of
+ * row order, so shards can be written concurrently. Rows above it can still repeat within the
+ * load; the loader settles those per batch against uk_location_epoch. Thread-safe.
+ */
+public class EpochWatermarks {
+
+    private final Map<Long, Long> storedEpochs;
+    private final boolean keepUndated;
+
+    private EpochWatermarks(Map<Long, Long> storedEpochs, boolean keepUndated) {
+        this.storedEpochs = Map.copyOf(storedEpochs);
+        this.keepUndated = keepUndated;
+    }
+
+    // Into empty tables: every row is new, including those without an epoch
+    public static EpochWatermarks empty() {
+        return new EpochWatermarks(Map.of(), true);
+    }
+
+    // On top of stored data, where rows without an epoch cannot be told apart from stored ones and are dropped
+    public static EpochWatermarks of(Map<Long, Long> storedEpochs) {
+        return new EpochWatermarks(storedEpochs, false);
+    }
+
+    public boolean isNew(Long locationId, Long epoch) {
+        if (epoch == null) {
+            return keepUndated;
+        }
+        Long stored = storedEpochs.get(locationId);
+        return stored == null || epoch > stored;
+    }
+}
@@ -0,0 +1,312 @@
+package raf.shell.weatherapp.ingest;
+
+import lombok.Getter;
+import raf.shell.weatherapp.dto.IngestFileStatus;
+import raf.shell.weatherapp.dto.IngestJobStatus;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one CSV load. Updated from the ingest threads and read by the REST layer.
+ */
+public class IngestJob implements CsvIngestPipeline.Listener {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private static final int MAX_RETAINED_ERRORS = 20;
+
+    @Getter
+    private final String id;
+    @Getter
+    private final String source;
+    @Getter
+    private final IngestMode mode;
+    // Explicit shards to load; null means whatever csv.file.path resolves to
+    @Getter
+    private final List<Path> inputs;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    @Getter
+    private volatile State state = State.QUEUED;
+    private volatile String message;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile boolean cancelRequested;
+    private volatile long bytesTotal;
+
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsPersisted = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final Deque<String> errors = new ArrayDeque<>();
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+    private final List<FileProgress> files = new ArrayList<>();
+
+    public IngestJob(String id, String source, IngestMode mode) {
+        this(id, source, mode, null);
+    }
+
+    public IngestJob(String id, String source, IngestMode mode, List<Path> inputs) {
+        this.id = id;
+        this.source = source;
+        this.mode = mode;
+        this.inputs = inputs != null ? List.copyOf(inputs) : null;
+    }
+
+    /**
+     * Progress of one input file. Forwards everything to the job as well.
+     */
+    public class FileProgress implements CsvIngestPipeline.Listener {
+
+        private final String path;
+        private final long bytesTotal;
+        private volatile String state = "PENDING";
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong rowsParsed = new AtomicLong();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final AtomicLong rowsSkipped = new AtomicLong();
+        private final AtomicLong rowsFailed = new AtomicLong();
+
+        private FileProgress(String path, long bytesTotal) {
+            this.path = path;
+            this.bytesTotal = bytesTotal;
+        }
+
+        public void loading() {
+            state = "LOADING";
+        }
+
+        public void done() {
+            state = "DONE";
+        }
+
+        public void failed() {
+            state = "FAILED";
+        }
+
+        public void addBytesRead(long count) {
+            bytesRead.addAndGet(count);
+            IngestJob.this.addBytesRead(count);
+        }
+
+        public void rowsSkipped(int count) {
+            rowsSkipped.addAndGet(count);
+            IngestJob.this.rowsSkipped(count);
+        }
+
+        @Override
+        public void rowsParsed(int count) {
+            rowsParsed.addAndGet(count);
+            IngestJob.this.rowsParsed(count);
+        }
+
+        @Override
+        public void rowFailed(long rowNumber, Exception e) {
+            rowsFailed.incrementAndGet();
+            IngestJob.this.rowFailed(path, rowNumber, e);
+        }
+
+        @Override
+        public void rowsWritten(int count) {
+            rowsWritten.addAndGet(count);
+            IngestJob.this.rowsWritten(count);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return IngestJob.this.isCancelled();
+        }
+
+        private IngestFileStatus toStatus() {
+            long read = bytesRead.get();
+            double progress = "DONE".equals(state) ? 1.0 : bytesTotal > 0 ? Math.min(1.0, (double) read / bytesTotal) : 0;
+            return IngestFileStatus.builder()
+                    .path(path)
+                    .state(state)
+                    .bytesTotal(bytesTotal)
+                    .bytesRead(read)
+                    .progressPercentage(Math.round(progress * 1000) / 10.0)
+                    .rowsParsed(rowsParsed.get())
+                    .rowsPersisted(rowsWritten.get() - rowsSkipped.get())
+                    .rowsFailed(rowsFailed.get())
+                    .build();
+        }
+    }
+
+    public void start(long bytesTotal) {
+        this.bytesTotal = bytesTotal;
+        this.startNanos = System.nanoTime();
+        this.startedAt = LocalDateTime.now();
+        this.state = State.RUNNING;
+    }
+
+    public void complete(String message) {
+        finish(State.COMPLETED, message);
+    }
+
+    public void fail(Exception e) {
+        recordError(e.getMessage());
+        finish(State.FAILED, "Failed: " + e.getMessage());
+    }
+
+    public void cancelled() {
+        finish(State.CANCELLED, "Cancelled after " + rowsPersisted.get() + " records");
+    }
+
+    public void requestCancel() {
+        cancelRequested = true;
+    }
+
+    public boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    public FileProgress addFile(String path, long bytesTotal) {
+        FileProgress file = new FileProgress(path, bytesTotal);
+        synchronized (files) {
+            files.add(file);
+        }
+        return file;
+    }
+
+    public void phaseCompleted(String phase, long millis) {
+        synchronized (phaseMillis) {
+            phaseMillis.put(phase, millis);
+        }
+    }
+
+    // Rows handed to the writer but not inserted because they were already stored
+    public void rowsSkipped(int count) {
+        rowsSkipped.addAndGet(count);
+    }
+
+    public void addBytesRead(long count) {
+        bytesRead.addAndGet(count);
+    }
+
+    @Override
+    public void rowsParsed(int count) {
+        rowsParsed.addAndGet(count);
+    }
+
+    @Override
+    public void rowFailed(long rowNumber, Exception e) {
+        rowFailed(null, rowNumber, e);
+    }
+
+    private void rowFailed(String file, long rowNumber, Exception e) {
+        rowsFailed.incrementAndGet();
+        recordError((file != null ? file + " row " : "Row ") + rowNumber + ": " + e.getMessage());
+    }
+
+    @Override
+    public void rowsWritten(int count) {
+        rowsPersisted.addAndGet(count);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    public IngestJobStatus toStatus() {
+        long persisted = rowsPersisted.get() - rowsSkipped.get();
+        double elapsedSeconds = elapsedSeconds();
+        double rowsPerSecond = elapsedSeconds > 0 ? persisted / elapsedSeconds : 0;
+
+        // Progress is estimated from bytes read from disk against the input sizes
+        double progress = 0;
+        Long etaSeconds = null;
+        long read = bytesRead.get();
+        if (bytesTotal > 0 && read > 0) {
+            progress = Math.min(1.0, (double) read / bytesTotal);
+            if (state == State.RUNNING && elapsedSeconds > 0) {
+                double bytesPerSecond = read / elapsedSeconds;
+                etaSeconds = Math.round(Math.max(0, bytesTotal - read) / bytesPerSecond);
+            }
+        }
+        if (state == State.COMPLETED) {
+            progress = 1.0;
+        }
+
+        return IngestJobStatus.builder()
+                .id(id)
+                .state(state.name())
+                .source(source)
+                .mode(mode.name())
+                .message(message)
+                .createdAt(createdAt)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .cancelRequested(cancelRequested)
+                .rowsParsed(rowsParsed.get())
+                .rowsPersisted(persisted)
+                .rowsFailed(rowsFailed.get())
+                .rowsSkipped(rowsSkipped.get())
+                .rowsPerSecond(Math.round(rowsPerSecond * 10) / 10.0)
+                .progressPercentage(Math.round(progress * 1000) / 10.0)
+                .etaSeconds(etaSeconds)
+                .phaseMillis(phaseTimings())
+                .files(fileStatuses())
+                .errors(recentErrors())
+                .build();
+    }
+
+    private void finish(State finalState, String message) {
+        this.message = message;
+        this.endNanos = System.nanoTime();
+        this.finishedAt = LocalDateTime.now();
+        this.state = finalState;
+    }
+
+    private double elapsedSeconds() {
+        if (startNanos == 0) return 0;
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000_000.0;
+    }
+
+    private void recordError(String error) {
+        synchronized (errors) {
+            if (errors.size() >= MAX_RETAINED_ERRORS) {
+                errors.removeFirst();
+            }
+            errors.addLast(error);
+        }
+    }
+
+    private Map<String, Long> phaseTimings() {
+        synchronized (phaseMillis) {
+            return new LinkedHashMap<>(phaseMillis);
+        }
+    }
+
+    private List<IngestFileStatus> fileStatuses() {
+        synchronized (files) {
+            List<IngestFileStatus> statuses = new ArrayList<>(files.size());
+            for (FileProgress file : files) {
+                statuses.add(file.toStatus());
+            }
+            return statuses;
+        }
+    }
+
+    private List<String> recentErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package raf.shell.weatherapp.ingest;
+
+public enum IngestMode {
+    // Load only into an empty database, skip otherwise; a failed or cancelled load leaves it empty again
+    INITIAL,
+    // Insert rows newer than the stored high-water mark of their location; rows without an epoch are skipped
+    INCREMENTAL,
+    // Load the whole file into staging tables and swap them in for the live fact tables
+    RELOAD
+}
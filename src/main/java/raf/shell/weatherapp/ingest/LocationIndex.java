@@ -0,0 +1,33 @@
+package raf.shell.weatherapp.ingest;
+
+import raf.shell.weatherapp.entity.Location;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory (country, location name) lookup used while loading facts. Filled before the
+ * parser workers start and only read by them afterwards.
+ */
+public class LocationIndex {
+
+    private final Map<String, Map<String, Location>> byCountry = new HashMap<>();
+    private int size;
+
+    public Location get(String country, String locationName) {
+        Map<String, Location> locations = byCountry.get(country);
+        return locations != null ? locations.get(locationName) : null;
+    }
+
+    public void put(Location location) {
+        Location previous = byCountry.computeIfAbsent(location.getCountry(), country -> new HashMap<>())
+                .put(location.getLocationName(), location);
+        if (previous == null) {
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,142 @@
+package raf.shell.weatherapp.ingest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Shadow copy of the fact table for blue/green reloads. The copy is loaded without its
+ * non-unique secondary indexes, indexed afterwards and swapped in with a single RENAME TABLE, so
+ * readers see either the old or the new dataset. Unique keys stay during the load, since the
+ * loader looks up repeated rows on them. Locations stay in the live table.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StagingTables {
+
+    public static final String SUFFIX = "_staging";
+    private static final String OLD_SUFFIX = "_old";
+
+    private static final String FACT_TABLE = "weather_records";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private record IndexDefinition(String name, boolean unique, List<String> columns) {
+    }
+
+    private record ForeignKeyDefinition(String name, String column, String referencedTable, String referencedColumn) {
+    }
+
+    // Fresh, empty staging tables with the live schema minus non-unique secondary indexes
+    public void prepare() {
+        drop(SUFFIX);
+        jdbcTemplate.execute("CREATE TABLE " + FACT_TABLE + SUFFIX + " LIKE " + FACT_TABLE);
+        // Ids carry on from the live table, so a reload never reuses an id the old data had
+        Long nextId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + FACT_TABLE, Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + FACT_TABLE + SUFFIX + " AUTO_INCREMENT = " + nextId);
+        for (IndexDefinition index : deferredIndexes()) {
+            jdbcTemplate.execute("ALTER TABLE " + FACT_TABLE + SUFFIX + " DROP INDEX `" + index.name() + "`");
+        }
+        log.info("Created staging table for {}", FACT_TABLE);
+    }
+
+    // Rebuilds the live tables' non-unique secondary indexes on the loaded staging tables
+    public void buildIndexes() {
+        List<IndexDefinition> indexes = deferredIndexes();
+        if (indexes.isEmpty()) return;
+
+        List<String> clauses = new ArrayList<>();
+        for (IndexDefinition index : indexes) {
+            clauses.add("ADD INDEX `" + index.name() + "` ("
+                    + String.join(", ", index.columns()) + ")");
+        }
+        // One ALTER builds all of the indexes in a single pass
+        jdbcTemplate.execute("ALTER TABLE " + FACT_TABLE + SUFFIX + " " + String.join(", ", clauses));
+    }
+
+    /**
+     * Atomically replaces the live fact table with the staging table and drops the old data.
+     */
+    public void swap() {
+        List<ForeignKeyDefinition> foreignKeys = foreignKeys(FACT_TABLE);
+
+        jdbcTemplate.execute("RENAME TABLE " + FACT_TABLE + " TO " + FACT_TABLE + OLD_SUFFIX + ", "
+                + FACT_TABLE + SUFFIX + " TO " + FACT_TABLE);
+        log.info("Swapped staging table in for {}", FACT_TABLE);
+
+        // Constraint names are unique per schema, so they can only be re-created once the old tables are gone
+        drop(OLD_SUFFIX);
+        restoreForeignKeys(FACT_TABLE, foreignKeys);
+    }
+
+    public void discard() {
+        drop(SUFFIX);
+    }
+
+    private void drop(String suffix) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + FACT_TABLE + suffix);
+    }
+
+    // Rows were loaded with consistent ids, so the constraints are added without re-validating them
+    private void restoreForeignKeys(String table, List<ForeignKeyDefinition> foreignKeys) {
+        if (foreignKeys.isEmpty()) return;
+
+        List<String> clauses = new ArrayList<>();
+        for (ForeignKeyDefinition foreignKey : foreignKeys) {
+            clauses.add("ADD CONSTRAINT `" + foreignKey.name() + "` FOREIGN KEY (" + foreignKey.column() + ") REFERENCES "
+                    + foreignKey.referencedTable() + " (" + foreignKey.referencedColumn() + ")");
+        }
+        String alter = "ALTER TABLE " + table + " " + String.join(", ", clauses);
+
+        // Session variable, so all three statements have to run on the same connection
+        jdbcTemplate.execute((Statement statement) -> {
+            statement.execute("SET foreign_key_checks = 0");
+            try {
+                statement.execute(alter);
+            } finally {
+                statement.execute("SET foreign_key_checks = 1");
+            }
+            return null;
+        });
+    }
+
+    private List<IndexDefinition> deferredIndexes() {
+        return secondaryIndexes(FACT_TABLE).stream().filter(index -> !index.unique()).collect(Collectors.toList());
+    }
+
+    private List<IndexDefinition> secondaryIndexes(String table) {
+        Map<String, IndexDefinition> indexes = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT INDEX_NAME, NON_UNIQUE, COLUMN_NAME, SUB_PART FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME <> 'PRIMARY' " +
+                "ORDER BY INDEX_NAME, SEQ_IN_INDEX", rs -> {
+            String name = rs.getString("INDEX_NAME");
+            String column = "`" + rs.getString("COLUMN_NAME") + "`";
+            int subPart = rs.getInt("SUB_PART");
+            if (!rs.wasNull()) {
+                column += "(" + subPart + ")";
+            }
+            boolean unique = rs.getInt("NON_UNIQUE") == 0;
+            indexes.computeIfAbsent(name, key -> new IndexDefinition(key, unique, new ArrayList<>()))
+                    .columns().add(column);
+        }, table);
+        return new ArrayList<>(indexes.values());
+    }
+
+    private List<ForeignKeyDefinition> foreignKeys(String table) {
+        return jdbcTemplate.query("SELECT CONSTRAINT_NAME, COLUMN_NAME, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME " +
+                        "FROM information_schema.KEY_COLUMN_USAGE " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND REFERENCED_TABLE_NAME IS NOT NULL",
+                (rs, rowNum) -> new ForeignKeyDefinition(rs.getString("CONSTRAINT_NAME"),
+                        "`" + rs.getString("COLUMN_NAME") + "`", rs.getString("REFERENCED_TABLE_NAME"),
+                        "`" + rs.getString("REFERENCED_COLUMN_NAME") + "`"), table);
+    }
+}
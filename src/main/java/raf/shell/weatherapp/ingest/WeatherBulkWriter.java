@@ -0,0 +1,181 @@
+package raf.shell.weatherapp.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import raf.shell.weatherapp.dictionary.DictionaryKind;
+import raf.shell.weatherapp.dictionary.StringDictionary;
+import raf.shell.weatherapp.entity.AirQuality;
+import raf.shell.weatherapp.entity.Astronomy;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Plain JDBC batch inserts for the CSV loader. The driver rewrites each batch into one multi-row
+ * INSERT (rewriteBatchedStatements=true); AUTO_INCREMENT hands such a statement a consecutive run
+ * of ids, which the driver reports back as generated keys in row order. Ids therefore come from
+ * the same counter as every other insert, whichever writer or process it comes from.
+ */
+@Component
+@RequiredArgsConstructor
+public class WeatherBulkWriter {
+
+    private static final String INSERT_LOCATION = "INSERT INTO locations " +
+            "(country, location_name, latitude, longitude, timezone_code) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_WEATHER_RECORD = "INSERT INTO weather_records%s " +
+            "(location_id, last_updated_epoch, last_updated, temperature_celsius, feels_like_celsius, " +
+            "condition_code, humidity, cloud, visibility_km, uv_index, wind_kph, wind_degree, wind_direction_code, " +
+            "gust_kph, pressure_mb, precip_mm, " +
+            "carbon_monoxide, ozone, nitrogen_dioxide, sulphur_dioxide, pm25, pm10, us_epa_index, gb_defra_index, " +
+            "sunrise_minutes, sunset_minutes, moonrise_minutes, moonset_minutes, day_length_minutes, " +
+            "moon_phase_code, moon_illumination) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " +
+            "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_STORED_EPOCHS = "SELECT location_id, last_updated_epoch FROM weather_records%s " +
+            "WHERE (location_id, last_updated_epoch) IN (%s)";
+
+    // A key of uk_location_epoch
+    public record EpochKey(long locationId, long epoch) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringDictionary stringDictionary;
+
+    @Value("${csv.ingest.jdbc-batch-size:1000}")
+    private int jdbcBatchSize;
+
+    public void insertLocations(List<Location> locations) {
+        if (locations.isEmpty()) return;
+        for (Location location : locations) {
+            stringDictionary.encode(DictionaryKind.TIMEZONE, location.getTimezone());
+        }
+
+        insert(INSERT_LOCATION, locations, (ps, location) -> {
+            ps.setString(1, location.getCountry());
+            ps.setString(2, location.getLocationName());
+            ps.setObject(3, location.getLatitude());
+            ps.setObject(4, location.getLongitude());
+            ps.setObject(5, stringDictionary.encode(DictionaryKind.TIMEZONE, location.getTimezone()));
+        }, Location::setId);
+    }
+
+    // Locations referenced by the records must already have ids
+    public void insertRecords(List<WeatherRecord> records) {
+        insertRecords(records, "");
+    }
+
+    // Writes into the fact table named with the given suffix, e.g. the staging table of a reload
+    public void insertRecords(List<WeatherRecord> records, String tableSuffix) {
+        if (records.isEmpty()) return;
+
+        // New dictionary values are registered up front, so the statement setter below only reads the cache
+        for (WeatherRecord record : records) {
+            stringDictionary.encode(DictionaryKind.CONDITION, record.getConditionText());
+            stringDictionary.encode(DictionaryKind.WIND_DIRECTION, record.getWindDirection());
+            if (record.getAstronomy() != null) {
+                stringDictionary.encode(DictionaryKind.MOON_PHASE, record.getAstronomy().getMoonPhase());
+            }
+        }
+
+        // Air quality and astronomy are embedded, so each CSV row is a single table row
+        AirQuality noAirQuality = new AirQuality();
+        Astronomy noAstronomy = new Astronomy();
+        insert(INSERT_WEATHER_RECORD.formatted(tableSuffix), records, (ps, record) -> {
+            ps.setLong(1, record.getLocation().getId());
+            ps.setObject(2, record.getLastUpdatedEpoch());
+            ps.setObject(3, record.getLastUpdated());
+            ps.setObject(4, record.getTemperatureCelsius());
+            ps.setObject(5, record.getFeelsLikeCelsius());
+            ps.setObject(6, stringDictionary.encode(DictionaryKind.CONDITION, record.getConditionText()));
+            ps.setObject(7, record.getHumidity());
+            ps.setObject(8, record.getCloud());
+            ps.setObject(9, record.getVisibilityKm());
+            ps.setObject(10, record.getUvIndex());
+            ps.setObject(11, record.getWindKph());
+            ps.setObject(12, record.getWindDegree());
+            ps.setObject(13, stringDictionary.encode(DictionaryKind.WIND_DIRECTION, record.getWindDirection()));
+            ps.setObject(14, record.getGustKph());
+            ps.setObject(15, record.getPressureMb());
+            ps.setObject(16, record.getPrecipMm());
+
+            AirQuality airQuality = record.getAirQuality() != null ? record.getAirQuality() : noAirQuality;
+            ps.setObject(17, airQuality.getCarbonMonoxide());
+            ps.setObject(18, airQuality.getOzone());
+            ps.setObject(19, airQuality.getNitrogenDioxide());
+            ps.setObject(20, airQuality.getSulphurDioxide());
+            ps.setObject(21, airQuality.getPm25());
+            ps.setObject(22, airQuality.getPm10());
+            ps.setObject(23, airQuality.getUsEpaIndex());
+            ps.setObject(24, airQuality.getGbDefraIndex());
+
+            Astronomy astronomy = record.getAstronomy() != null ? record.getAstronomy() : noAstronomy;
+            ps.setObject(25, astronomy.getSunriseMinutes());
+            ps.setObject(26, astronomy.getSunsetMinutes());
+            ps.setObject(27, astronomy.getMoonriseMinutes());
+            ps.setObject(28, astronomy.getMoonsetMinutes());
+            ps.setObject(29, astronomy.getDayLengthMinutes());
+            ps.setObject(30, stringDictionary.encode(DictionaryKind.MOON_PHASE, astronomy.getMoonPhase()));
+            ps.setObject(31, astronomy.getMoonIllumination());
+        }, WeatherRecord::setId);
+    }
+
+    // The keys already stored in the fact table with the given suffix, looked up on uk_location_epoch
+    public Set<EpochKey> findStoredEpochs(Collection<EpochKey> keys, String tableSuffix) {
+        Set<EpochKey> stored = new HashSet<>();
+        List<EpochKey> pending = new ArrayList<>(keys);
+        for (int from = 0; from < pending.size(); from += jdbcBatchSize) {
+            List<EpochKey> chunk = pending.subList(from, Math.min(pending.size(), from + jdbcBatchSize));
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[2 * i] = chunk.get(i).locationId();
+                args[2 * i + 1] = chunk.get(i).epoch();
+            }
+            String sql = SELECT_STORED_EPOCHS.formatted(tableSuffix, String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)")));
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> stored.add(new EpochKey(rs.getLong(1), rs.getLong(2))), args);
+        }
+        return stored;
+    }
+
+    // Sends the items in batches of jdbc-batch-size and hands each item the id generated for its row
+    private <T> void insert(String sql, List<T> items, ParameterizedPreparedStatementSetter<T> setter,
+                            BiConsumer<T, Long> idSetter) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int from = 0; from < items.size(); from += jdbcBatchSize) {
+                    List<T> batch = items.subList(from, Math.min(items.size(), from + jdbcBatchSize));
+                    for (T item : batch) {
+                        setter.setValues(statement, item);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (T item : batch) {
+                            if (!keys.next()) {
+                                throw new IllegalStateException("Fewer generated keys than inserted rows");
+                            }
+                            idSetter.accept(item, keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
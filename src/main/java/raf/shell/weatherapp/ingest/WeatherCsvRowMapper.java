@@ -0,0 +1,197 @@
+package raf.shell.weatherapp.ingest;
+
+import raf.shell.weatherapp.entity.AirQuality;
+import raf.shell.weatherapp.entity.Astronomy;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps one GlobalWeatherRepository.csv row, as split by OpenCSV, onto the entities.
+ */
+public final class WeatherCsvRowMapper {
+
+    public static final int COLUMN_COUNT = 41;
+
+    static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    // last_updated of rows that have neither a usable local time nor an epoch
+    public static final LocalDateTime UNKNOWN_LAST_UPDATED = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final long MAX_DATETIME_EPOCH = 253_402_300_799L;
+
+    // Raw spellings seen so far; the column has few distinct values
+    private static final int MAX_CACHED_CONDITIONS = 10_000;
+    private static final Map<String, String> NORMALIZED_CONDITIONS = new ConcurrentHashMap<>();
+
+    private WeatherCsvRowMapper() {
+    }
+
+    public static Location toLocation(String[] row) {
+        Location location = new Location();
+        location.setCountry(row[0]);
+        location.setLocationName(row[1]);
+        location.setLatitude(parseDouble(row[2]));
+        location.setLongitude(parseDouble(row[3]));
+        location.setTimezone(row[4]);
+        return location;
+    }
+
+    // Called from parser worker threads; the location index is read-only by then
+    public static WeatherRecord toRecord(String[] row, LocationIndex locationIndex) {
+        if (row.length < COLUMN_COUNT) {
+            return null;
+        }
+
+        Location location = locationIndex.get(row[0], row[1]);
+        if (location == null) {
+            throw new IllegalStateException("Location " + row[0] + "/" + row[1] + " was not resolved");
+        }
+
+        // Create air quality
+        AirQuality airQuality = new AirQuality();
+        airQuality.setCarbonMonoxide(parseDouble(row[27]));
+        airQuality.setOzone(parseDouble(row[28]));
+        airQuality.setNitrogenDioxide(parseDouble(row[29]));
+        airQuality.setSulphurDioxide(parseDouble(row[30]));
+        airQuality.setPm25(parseDouble(row[31]));
+        airQuality.setPm10(parseDouble(row[32]));
+        airQuality.setUsEpaIndex(parseInteger(row[33]));
+        airQuality.setGbDefraIndex(parseInteger(row[34]));
+
+        // Create astronomy
+        Astronomy astronomy = new Astronomy();
+        astronomy.setSunriseMinutes(parseClockTime(row[35]));
+        astronomy.setSunsetMinutes(parseClockTime(row[36]));
+        astronomy.setMoonriseMinutes(parseClockTime(row[37]));
+        astronomy.setMoonsetMinutes(parseClockTime(row[38]));
+        astronomy.setDayLengthMinutes(dayLengthMinutes(astronomy.getSunriseMinutes(), astronomy.getSunsetMinutes()));
+        astronomy.setMoonPhase(row[39]);
+        astronomy.setMoonIllumination(parseInteger(row[40]));
+
+        // Create weather record
+        WeatherRecord record = new WeatherRecord();
+        record.setLocation(location);
+        record.setAirQuality(airQuality);
+        record.setAstronomy(astronomy);
+        record.setLastUpdatedEpoch(parseLong(row[5]));
+        record.setLastUpdated(lastUpdated(parseDateTime(row[6]), record.getLastUpdatedEpoch()));
+        record.setTemperatureCelsius(parseDouble(row[7]));
+        record.setConditionText(normalizeCondition(row[9]));
+        record.setWindKph(parseDouble(row[11]));
+        record.setWindDegree(parseInteger(row[12]));
+        record.setWindDirection(row[13]);
+        record.setPressureMb(parseDouble(row[14]));
+        record.setPrecipMm(parseDouble(row[16]));
+        record.setHumidity(parseInteger(row[18]));
+        record.setCloud(parseInteger(row[19]));
+        record.setFeelsLikeCelsius(parseDouble(row[20]));
+        record.setVisibilityKm(parseDouble(row[22]));
+        record.setUvIndex(parseDouble(row[24]));
+        record.setGustKph(parseDouble(row[26]));
+
+        return record;
+    }
+
+    /**
+     * Canonical spelling of a condition text: trimmed, inner whitespace collapsed, lower case
+     * with a capital first letter, e.g. " partly  Cloudy" becomes "Partly cloudy".
+     */
+    public static String normalizeCondition(String value) {
+        if (value == null) return null;
+        String normalized = NORMALIZED_CONDITIONS.get(value);
+        if (normalized != null) return normalized;
+
+        String collapsed = value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        normalized = collapsed.isEmpty() ? collapsed
+                : (Character.toUpperCase(collapsed.charAt(0)) + collapsed.substring(1)).intern();
+        if (NORMALIZED_CONDITIONS.size() < MAX_CACHED_CONDITIONS) {
+            NORMALIZED_CONDITIONS.put(value, normalized);
+        }
+        return normalized;
+    }
+
+    public static Double parseDouble(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static Integer parseInteger(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static Long parseLong(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Minutes after midnight of a 12-hour clock time such as "06:04 AM" or "6:04 pm"; null for
+     * anything else, e.g. the "No moonrise" the CSV has on days without one.
+     */
+    public static Short parseClockTime(String value) {
+        if (value == null) return null;
+        String time = value.trim();
+        int colon = time.indexOf(':');
+        int space = time.indexOf(' ', colon + 1);
+        if (colon < 1 || colon > 2 || space != colon + 3 || time.length() != space + 3) return null;
+
+        Integer hour = parseInteger(time.substring(0, colon));
+        Integer minute = parseInteger(time.substring(colon + 1, space));
+        String period = time.substring(space + 1).toUpperCase(Locale.ROOT);
+        if (hour == null || minute == null || hour < 1 || hour > 12 || minute < 0 || minute > 59
+                || !(period.equals("AM") || period.equals("PM"))) {
+            return null;
+        }
+        return clockMinutes(hour, minute, period.equals("PM"));
+    }
+
+    static short clockMinutes(int hour, int minute, boolean pm) {
+        return (short) ((hour % 12 + (pm ? 12 : 0)) * 60 + minute);
+    }
+
+    // Sunset after midnight local time wraps around; polar day or night has no length
+    public static Short dayLengthMinutes(Short sunrise, Short sunset) {
+        if (sunrise == null || sunset == null) return null;
+        return (short) Math.floorMod(sunset - sunrise, MINUTES_PER_DAY);
+    }
+
+    /**
+     * last_updated partitions weather_records and cannot be null: a missing or invalid local time
+     * falls back to the epoch read as UTC, and to {@link #UNKNOWN_LAST_UPDATED} without one.
+     */
+    public static LocalDateTime lastUpdated(LocalDateTime localTime, Long epoch) {
+        if (localTime != null) return localTime;
+        if (epoch == null || epoch < 0 || epoch > MAX_DATETIME_EPOCH) return UNKNOWN_LAST_UPDATED;
+        return LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime parseDateTime(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return LocalDateTime.parse(value, DATE_TIME_FORMATTER);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
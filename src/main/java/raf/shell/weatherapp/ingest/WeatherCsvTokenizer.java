@@ -0,0 +1,553 @@
+package raf.shell.weatherapp.ingest;
+
+import raf.shell.weatherapp.entity.AirQuality;
+import raf.shell.weatherapp.entity.Astronomy;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * GlobalWeatherRepository.csv tokenizer working directly on a memory-mapped file.
+ * <p>
+ * Rows are handed out as byte ranges; fields are located in reusable per-thread offset arrays,
+ * numbers are parsed straight from the bytes and the repeated text columns are interned, so a
+ * row costs no intermediate Strings and no exceptions. Splitting follows OpenCSV's defaults
+ * (double-quote quoting with "" and backslash escapes) and values that fall outside the fast
+ * paths are handed to {@link WeatherCsvRowMapper}, so both paths produce the same records.
+ */
+public class WeatherCsvTokenizer {
+
+    public record RowSpan(int start, int end) {
+        public int length() {
+            return end - start;
+        }
+    }
+
+    private static final int COLUMN_COUNT = WeatherCsvRowMapper.COLUMN_COUNT;
+    private static final byte SEPARATOR = ',';
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    // Every power of ten that is exact as a double, 1e22 being the largest
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final ThreadLocal<FieldBounds> fieldBounds = ThreadLocal.withInitial(FieldBounds::new);
+
+    private static final class FieldBounds {
+        private final int[] starts = new int[COLUMN_COUNT];
+        private final int[] ends = new int[COLUMN_COUNT];
+        // Raw field needs unescaping or has text after its closing quote
+        private final boolean[] complex = new boolean[COLUMN_COUNT];
+        private final int[] rawStarts = new int[COLUMN_COUNT];
+        private final int[] rawEnds = new int[COLUMN_COUNT];
+        private final ByteStringInterner interner = new ByteStringInterner();
+    }
+
+    public WeatherCsvTokenizer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+    }
+
+    public static boolean canMap(Path path) throws IOException {
+        return Files.size(path) <= Integer.MAX_VALUE;
+    }
+
+    public static WeatherCsvTokenizer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to memory-map: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            return new WeatherCsvTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Sequential cursor over the data rows, positioned after the header.
+     */
+    public RowCursor cursor() {
+        RowCursor cursor = new RowCursor();
+        cursor.readNext();
+        return cursor;
+    }
+
+    public class RowCursor implements CsvIngestPipeline.RowSource<RowSpan> {
+
+        private int position;
+
+        @Override
+        public RowSpan readNext() {
+            if (position >= limit) {
+                return null;
+            }
+
+            int start = position;
+            int i = start;
+            boolean inQuotes = false;
+            while (i < limit) {
+                byte b = buffer.get(i);
+                if (b == ESCAPE && isEscapable(i + 1, limit)) {
+                    i += 2;
+                    continue;
+                }
+                if (b == QUOTE) {
+                    inQuotes = !inQuotes;
+                } else if (b == LF && !inQuotes) {
+                    break;
+                }
+                i++;
+            }
+
+            position = i + 1;
+            int end = Math.min(i, limit);
+            if (end > start && buffer.get(end - 1) == CR) {
+                end--;
+            }
+            return new RowSpan(start, end);
+        }
+    }
+
+    /**
+     * Returns the location of the row from the index, or creates and registers a new, unsaved one.
+     * Returns null for rows the loader would skip.
+     */
+    public Location resolveLocation(RowSpan row, LocationIndex locationIndex, List<Location> newLocations) {
+        FieldBounds fields = fieldBounds.get();
+        if (tokenize(row, fields) < COLUMN_COUNT) {
+            return null;
+        }
+        return resolveLocation(fields, locationIndex, newLocations);
+    }
+
+    /**
+     * Like {@link #resolveLocation(RowSpan, LocationIndex, List)}, also adding the month of the
+     * last_updated the row's record will get, so the table can be partitioned for it up front.
+     */
+    public Location resolveLocation(RowSpan row, LocationIndex locationIndex, List<Location> newLocations,
+                                    Set<YearMonth> months) {
+        FieldBounds fields = fieldBounds.get();
+        if (tokenize(row, fields) < COLUMN_COUNT) {
+            return null;
+        }
+        months.add(YearMonth.from(WeatherCsvRowMapper.lastUpdated(dateTimeField(fields, 6), longField(fields, 5))));
+        return resolveLocation(fields, locationIndex, newLocations);
+    }
+
+    private Location resolveLocation(FieldBounds fields, LocationIndex locationIndex, List<Location> newLocations) {
+        String country = stringField(fields, 0);
+        String locationName = stringField(fields, 1);
+        Location location = locationIndex.get(country, locationName);
+        if (location == null) {
+            location = new Location();
+            location.setCountry(country);
+            location.setLocationName(locationName);
+            location.setLatitude(doubleField(fields, 2));
+            location.setLongitude(doubleField(fields, 3));
+            location.setTimezone(stringField(fields, 4));
+            locationIndex.put(location);
+            newLocations.add(location);
+        }
+        return location;
+    }
+
+    /**
+     * Same mapping as {@link WeatherCsvRowMapper#toRecord(String[], LocationIndex)}.
+     * Safe to call from several parser threads.
+     */
+    public WeatherRecord parseRecord(RowSpan row, LocationIndex locationIndex) {
+        FieldBounds fields = fieldBounds.get();
+        if (tokenize(row, fields) < COLUMN_COUNT) {
+            return null;
+        }
+
+        String country = stringField(fields, 0);
+        String locationName = stringField(fields, 1);
+        Location location = locationIndex.get(country, locationName);
+        if (location == null) {
+            throw new IllegalStateException("Location " + country + "/" + locationName + " was not resolved");
+        }
+
+        AirQuality airQuality = new AirQuality();
+        airQuality.setCarbonMonoxide(doubleField(fields, 27));
+        airQuality.setOzone(doubleField(fields, 28));
+        airQuality.setNitrogenDioxide(doubleField(fields, 29));
+        airQuality.setSulphurDioxide(doubleField(fields, 30));
+        airQuality.setPm25(doubleField(fields, 31));
+        airQuality.setPm10(doubleField(fields, 32));
+        airQuality.setUsEpaIndex(integerField(fields, 33));
+        airQuality.setGbDefraIndex(integerField(fields, 34));
+
+        Astronomy astronomy = new Astronomy();
+        astronomy.setSunriseMinutes(clockTimeField(fields, 35));
+        astronomy.setSunsetMinutes(clockTimeField(fields, 36));
+        astronomy.setMoonriseMinutes(clockTimeField(fields, 37));
+        astronomy.setMoonsetMinutes(clockTimeField(fields, 38));
+        astronomy.setDayLengthMinutes(WeatherCsvRowMapper.dayLengthMinutes(astronomy.getSunriseMinutes(),
+                astronomy.getSunsetMinutes()));
+        astronomy.setMoonPhase(stringField(fields, 39));
+        astronomy.setMoonIllumination(integerField(fields, 40));
+
+        WeatherRecord record = new WeatherRecord();
+        record.setLocation(location);
+        record.setAirQuality(airQuality);
+        record.setAstronomy(astronomy);
+        record.setLastUpdatedEpoch(longField(fields, 5));
+        record.setLastUpdated(WeatherCsvRowMapper.lastUpdated(dateTimeField(fields, 6), record.getLastUpdatedEpoch()));
+        record.setTemperatureCelsius(doubleField(fields, 7));
+        record.setConditionText(WeatherCsvRowMapper.normalizeCondition(stringField(fields, 9)));
+        record.setWindKph(doubleField(fields, 11));
+        record.setWindDegree(integerField(fields, 12));
+        record.setWindDirection(stringField(fields, 13));
+        record.setPressureMb(doubleField(fields, 14));
+        record.setPrecipMm(doubleField(fields, 16));
+        record.setHumidity(integerField(fields, 18));
+        record.setCloud(integerField(fields, 19));
+        record.setFeelsLikeCelsius(doubleField(fields, 20));
+        record.setVisibilityKm(doubleField(fields, 22));
+        record.setUvIndex(doubleField(fields, 24));
+        record.setGustKph(doubleField(fields, 26));
+
+        return record;
+    }
+
+    // Records the bounds of up to COLUMN_COUNT fields and returns the total field count
+    private int tokenize(RowSpan row, FieldBounds fields) {
+        int end = row.end();
+        int i = row.start();
+        int field = 0;
+
+        while (true) {
+            int rawStart = i;
+            int valueStart;
+            int valueEnd;
+            boolean complex = false;
+
+            // OpenCSV ignores blanks in front of an opening quote
+            int j = i;
+            while (j < end && buffer.get(j) == ' ') {
+                j++;
+            }
+
+            if (j < end && buffer.get(j) == QUOTE) {
+                int k = j + 1;
+                while (k < end) {
+                    byte b = buffer.get(k);
+                    if (b == ESCAPE && isEscapable(k + 1, end)) {
+                        complex = true;
+                        k += 2;
+                    } else if (b == QUOTE) {
+                        if (k + 1 < end && buffer.get(k + 1) == QUOTE) {
+                            complex = true;
+                            k += 2;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        k++;
+                    }
+                }
+                valueStart = j + 1;
+                valueEnd = Math.min(k, end);
+                i = Math.min(k + 1, end);
+                while (i < end && buffer.get(i) != SEPARATOR) {
+                    complex = true;
+                    i++;
+                }
+            } else {
+                while (i < end && buffer.get(i) != SEPARATOR) {
+                    byte b = buffer.get(i);
+                    if (b == QUOTE || b == ESCAPE) {
+                        complex = true;
+                    }
+                    i++;
+                }
+                valueStart = rawStart;
+                valueEnd = i;
+            }
+
+            if (field < COLUMN_COUNT) {
+                fields.starts[field] = valueStart;
+                fields.ends[field] = valueEnd;
+                fields.complex[field] = complex;
+                fields.rawStarts[field] = rawStart;
+                fields.rawEnds[field] = i;
+            }
+            field++;
+
+            if (i >= end) {
+                return field;
+            }
+            // Skip the separator
+            i++;
+        }
+    }
+
+    private boolean isEscapable(int index, int end) {
+        if (index >= end) return false;
+        byte next = buffer.get(index);
+        return next == QUOTE || next == ESCAPE;
+    }
+
+    private String stringField(FieldBounds fields, int index) {
+        if (fields.complex[index]) {
+            return decode(fields.rawStarts[index], fields.rawEnds[index]).intern();
+        }
+        return fields.interner.intern(buffer, fields.starts[index], fields.ends[index]);
+    }
+
+    private Double doubleField(FieldBounds fields, int index) {
+        if (fields.complex[index]) {
+            return WeatherCsvRowMapper.parseDouble(decode(fields.rawStarts[index], fields.rawEnds[index]));
+        }
+        int start = fields.starts[index];
+        int end = fields.ends[index];
+        if (start == end) return null;
+
+        int i = start;
+        boolean negative = false;
+        byte b = buffer.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        while (i < end && isDigit(b = buffer.get(i))) {
+            mantissa = mantissa * 10 + (b - '0');
+            if (mantissa != 0) significantDigits++;
+            anyDigit = true;
+            i++;
+            if (significantDigits > 15) return slowDouble(start, end);
+        }
+        if (i < end && buffer.get(i) == '.') {
+            i++;
+            while (i < end && isDigit(b = buffer.get(i))) {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) significantDigits++;
+                exponent--;
+                anyDigit = true;
+                i++;
+                if (significantDigits > 15) return slowDouble(start, end);
+            }
+        }
+        if (!anyDigit) {
+            return slowDouble(start, end);
+        }
+        if (i < end && ((b = buffer.get(i)) == 'e' || b == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && ((b = buffer.get(i)) == '-' || b == '+')) {
+                negativeExponent = b == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            boolean exponentDigit = false;
+            while (i < end && isDigit(b = buffer.get(i)) && explicitExponent < 1000) {
+                explicitExponent = explicitExponent * 10 + (b - '0');
+                exponentDigit = true;
+                i++;
+            }
+            if (!exponentDigit) {
+                return slowDouble(start, end);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            // Trailing text such as "NaN", "1.5d" or whitespace: let Double.parseDouble decide
+            return slowDouble(start, end);
+        }
+
+        // Exact mantissa and power of ten: a single multiply or divide rounds correctly
+        if (mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            return slowDouble(start, end);
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private Double slowDouble(int start, int end) {
+        return WeatherCsvRowMapper.parseDouble(ascii(start, end));
+    }
+
+    private Integer integerField(FieldBounds fields, int index) {
+        if (fields.complex[index]) {
+            return WeatherCsvRowMapper.parseInteger(decode(fields.rawStarts[index], fields.rawEnds[index]));
+        }
+        long value = parseLongBytes(fields.starts[index], fields.ends[index]);
+        if (value == Long.MIN_VALUE || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return null;
+        }
+        return (int) value;
+    }
+
+    private Long longField(FieldBounds fields, int index) {
+        if (fields.complex[index]) {
+            return WeatherCsvRowMapper.parseLong(decode(fields.rawStarts[index], fields.rawEnds[index]));
+        }
+        long value = parseLongBytes(fields.starts[index], fields.ends[index]);
+        if (value == Long.MIN_VALUE) {
+            // Malformed, or a literal Long.MIN_VALUE; the mapper tells them apart like the OpenCSV path
+            return WeatherCsvRowMapper.parseLong(decode(fields.starts[index], fields.ends[index]));
+        }
+        return value;
+    }
+
+    // Long.MIN_VALUE marks an empty or malformed value, as Long.parseLong would reject it, but is also
+    // the value of the literal -9223372036854775808; callers needing that one re-parse on the sentinel
+    private long parseLongBytes(int start, int end) {
+        if (start == end) return Long.MIN_VALUE;
+
+        int i = start;
+        boolean negative = false;
+        byte b = buffer.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        if (i == end) return Long.MIN_VALUE;
+
+        // Accumulate negatively, like Long.parseLong, to cover the full range
+        long result = 0;
+        while (i < end) {
+            b = buffer.get(i++);
+            if (!isDigit(b)) return Long.MIN_VALUE;
+            int digit = b - '0';
+            if (result < (Long.MIN_VALUE + digit) / 10) return Long.MIN_VALUE;
+            result = result * 10 - digit;
+        }
+        if (negative) {
+            return result;
+        }
+        return result == Long.MIN_VALUE ? Long.MIN_VALUE : -result;
+    }
+
+    // Fast path for "yyyy-MM-dd HH:mm"; anything unusual goes through the formatter
+    private LocalDateTime dateTimeField(FieldBounds fields, int index) {
+        if (fields.complex[index]) {
+            return WeatherCsvRowMapper.parseDateTime(decode(fields.rawStarts[index], fields.rawEnds[index]));
+        }
+        int start = fields.starts[index];
+        int end = fields.ends[index];
+        if (start == end) return null;
+        if (end - start != 16 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-'
+                || buffer.get(start + 10) != ' ' || buffer.get(start + 13) != ':') {
+            return WeatherCsvRowMapper.parseDateTime(ascii(start, end));
+        }
+
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        int hour = digits(start + 11, 2);
+        int minute = digits(start + 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || day > Month.of(month).length(Year.isLeap(year))) {
+            return WeatherCsvRowMapper.parseDateTime(ascii(start, end));
+        }
+        return LocalDateTime.of(year, month, day, hour, minute);
+    }
+
+    // Fast path for "hh:mm AM"; "No moonrise" and other spellings go through the mapper
+    private Short clockTimeField(FieldBounds fields, int index) {
+        if (fields.complex[index]) {
+            return WeatherCsvRowMapper.parseClockTime(decode(fields.rawStarts[index], fields.rawEnds[index]));
+        }
+        int start = fields.starts[index];
+        int end = fields.ends[index];
+        if (start == end) return null;
+        if (end - start != 8 || buffer.get(start + 2) != ':' || buffer.get(start + 5) != ' '
+                || buffer.get(start + 7) != 'M') {
+            return WeatherCsvRowMapper.parseClockTime(ascii(start, end));
+        }
+
+        int hour = digits(start, 2);
+        int minute = digits(start + 3, 2);
+        byte period = buffer.get(start + 6);
+        if (hour < 1 || hour > 12 || minute < 0 || minute > 59 || (period != 'A' && period != 'P')) {
+            return WeatherCsvRowMapper.parseClockTime(ascii(start, end));
+        }
+        return WeatherCsvRowMapper.clockMinutes(hour, minute, period == 'P');
+    }
+
+    // -1 if any byte is not a digit
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            byte b = buffer.get(i);
+            if (!isDigit(b)) return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private String ascii(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Full OpenCSV-style unquoting for the rare fields with escapes or stray quotes
+    private String decode(int start, int end) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+        boolean inQuotes = false;
+        boolean fieldStarted = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == ESCAPE && (inQuotes || fieldStarted) && isEscapable(i + 1, end)) {
+                out.write(buffer.get(++i));
+                fieldStarted = true;
+            } else if (b == QUOTE) {
+                if (inQuotes && i + 1 < end && buffer.get(i + 1) == QUOTE) {
+                    out.write(QUOTE);
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+                fieldStarted = true;
+            } else if (b == ' ' && !fieldStarted && !inQuotes) {
+                // Leading blank, kept unless the field turns out to be quoted
+                int j = i;
+                while (j < end && buffer.get(j) == ' ') j++;
+                if (j < end && buffer.get(j) == QUOTE) {
+                    i = j - 1;
+                } else {
+                    out.write(b);
+                    fieldStarted = true;
+                }
+            } else {
+                out.write(b);
+                fieldStarted = true;
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
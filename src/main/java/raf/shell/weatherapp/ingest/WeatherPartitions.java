@@ -0,0 +1,212 @@
+package raf.shell.weatherapp.ingest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Monthly RANGE partitions of weather_records on TO_DAYS(last_updated). Besides one partition
+ * per month there is p_before for anything older than the first month and p_future for anything
+ * after the last one, so every row has a home; p_future is split into new months ahead of time,
+ * while it is still empty and the split costs nothing, and loads split out of p_before the past
+ * months their input covers. Time-window queries on last_updated are pruned to the months they
+ * cover and old months are removed with DROP PARTITION.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WeatherPartitions {
+
+    private static final String TABLE = "weather_records";
+    private static final String BEFORE = "p_before";
+    private static final String FUTURE = "p_future";
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    // Months further back get no partitions of their own and stay in p_before, well within MySQL's 8192 partitions
+    private static final int MAX_YEARS_BACK = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${weather.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    public boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL", Integer.class, TABLE);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Converts the unpartitioned table: last_updated becomes NOT NULL and part of the primary and
+     * unique keys, foreign keys are dropped, and the rows are redistributed into monthly partitions
+     * from the oldest stored month through {@code weather.partitions.months-ahead} months from now.
+     */
+    public void partition() {
+        long start = System.nanoTime();
+        jdbcTemplate.update("UPDATE " + TABLE + " SET last_updated = CASE WHEN last_updated_epoch BETWEEN 0 AND 253402300799 " +
+                "THEN TIMESTAMP('1970-01-01') + INTERVAL last_updated_epoch SECOND ELSE ? END " +
+                "WHERE last_updated IS NULL", WeatherCsvRowMapper.UNKNOWN_LAST_UPDATED);
+
+        List<String> constraints = jdbcTemplate.queryForList("SELECT CONSTRAINT_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND REFERENCED_TABLE_NAME IS NOT NULL", String.class, TABLE);
+        for (String constraint : constraints) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP FOREIGN KEY `" + constraint + "`");
+        }
+
+        String type = jdbcTemplate.queryForObject("SELECT COLUMN_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = 'last_updated'", String.class, TABLE);
+        List<String> clauses = new ArrayList<>(List.of("MODIFY last_updated " + type + " NOT NULL",
+                "DROP PRIMARY KEY", "ADD PRIMARY KEY (id, last_updated)"));
+        List<String> uniqueColumns = jdbcTemplate.queryForList("SELECT COLUMN_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = 'uk_location_epoch'", String.class, TABLE);
+        if (!uniqueColumns.isEmpty() && !uniqueColumns.contains("last_updated")) {
+            clauses.add("DROP INDEX uk_location_epoch");
+            clauses.add("ADD UNIQUE INDEX uk_location_epoch (location_id, last_updated_epoch, last_updated)");
+        }
+        // One ALTER, so the auto-increment id is never left without a key
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " " + String.join(", ", clauses));
+
+        LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(last_updated) FROM " + TABLE +
+                " WHERE last_updated > ?", LocalDateTime.class, WeatherCsvRowMapper.UNKNOWN_LAST_UPDATED);
+        YearMonth first = oldest != null ? YearMonth.from(oldest) : YearMonth.now();
+        YearMonth last = YearMonth.now().plusMonths(monthsAhead);
+        if (last.isBefore(first)) {
+            last = first;
+        }
+
+        List<String> partitions = new ArrayList<>();
+        partitions.add(partition(BEFORE, "TO_DAYS('" + first.atDay(1) + "')"));
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            partitions.add(monthPartition(month));
+        }
+        partitions.add(partition(FUTURE, "MAXVALUE"));
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " PARTITION BY RANGE (TO_DAYS(last_updated)) (" +
+                String.join(", ", partitions) + ")");
+        log.info("Partitioned {} by month from {} through {} in {} ms", TABLE, first, last,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Splits p_future so there are monthly partitions through months-ahead months from now
+    public void ensureFuturePartitions() {
+        if (!isPartitioned()) return;
+        splitFuture(YearMonth.now().plusMonths(monthsAhead));
+    }
+
+    /**
+     * Gives each of the months rows are about to be loaded into a partition of its own before the
+     * load starts: earlier months are split out of p_before, later ones out of p_future, keeping one
+     * partition per month in between. Rows of unknown time and months more than 50 years back or
+     * beyond months-ahead stay in p_before and p_future.
+     */
+    public void ensurePartitions(Collection<YearMonth> months) {
+        if (!isPartitioned()) return;
+
+        YearMonth now = YearMonth.now();
+        YearMonth through = now.plusMonths(monthsAhead);
+        YearMonth earliest = now.minusYears(MAX_YEARS_BACK);
+        YearMonth unknown = YearMonth.from(WeatherCsvRowMapper.UNKNOWN_LAST_UPDATED);
+        YearMonth from = months.stream()
+                .filter(month -> !month.equals(unknown) && !month.isBefore(earliest) && !month.isAfter(through))
+                .min(YearMonth::compareTo)
+                .orElse(null);
+
+        YearMonth firstMonth = monthlyPartitions().stream()
+                .map(name -> YearMonth.parse(name, MONTH_NAME))
+                .min(YearMonth::compareTo)
+                .orElse(null);
+        if (from != null && firstMonth != null && from.isBefore(firstMonth)) {
+            List<String> partitions = new ArrayList<>();
+            partitions.add(partition(BEFORE, "TO_DAYS('" + from.atDay(1) + "')"));
+            for (YearMonth month = from; month.isBefore(firstMonth); month = month.plusMonths(1)) {
+                partitions.add(monthPartition(month));
+            }
+            // Moves the rows of the new months out of p_before, which is still small before their load
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + BEFORE + " INTO (" +
+                    String.join(", ", partitions) + ")");
+            log.info("Added {} partitions of {} from {}", partitions.size() - 1, TABLE, from);
+        }
+        splitFuture(through);
+    }
+
+    private void splitFuture(YearMonth through) {
+        YearMonth lastMonth = monthlyPartitions().stream()
+                .map(name -> YearMonth.parse(name, MONTH_NAME))
+                .max(YearMonth::compareTo)
+                .orElse(YearMonth.now().minusMonths(1));
+        if (!lastMonth.isBefore(through)) return;
+
+        List<String> partitions = new ArrayList<>();
+        for (YearMonth month = lastMonth.plusMonths(1); !month.isAfter(through); month = month.plusMonths(1)) {
+            partitions.add(monthPartition(month));
+        }
+        partitions.add(partition(FUTURE, "MAXVALUE"));
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + FUTURE + " INTO (" +
+                String.join(", ", partitions) + ")");
+        log.info("Added {} partitions of {} through {}", partitions.size() - 1, TABLE, through);
+    }
+
+    /**
+     * Drops the monthly partitions before {@code month}, returning their names. Dropping a partition
+     * discards its rows without deleting them one by one. p_before, which also holds the rows of
+     * unknown time, is only emptied when {@code includeBefore} asks for it, and is then listed first.
+     */
+    public List<String> dropBefore(YearMonth month, boolean includeBefore) {
+        List<String> dropped = new ArrayList<>();
+        for (String name : monthlyPartitions()) {
+            if (YearMonth.parse(name, MONTH_NAME).isBefore(month)) {
+                dropped.add(name);
+            }
+        }
+        if (!dropped.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + String.join(", ", dropped));
+        }
+        if (includeBefore) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " TRUNCATE PARTITION " + BEFORE);
+            dropped.add(0, BEFORE);
+        }
+        log.info("Dropped partitions {} of {}", dropped, TABLE);
+        return dropped;
+    }
+
+    // Partition name to estimated row count, in range order
+    public Map<String, Long> describe() {
+        Map<String, Long> partitions = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT PARTITION_NAME, TABLE_ROWS FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION", rs -> {
+            partitions.put(rs.getString(1), rs.getLong(2));
+        }, TABLE);
+        return partitions;
+    }
+
+    public static String monthPartitionName(YearMonth month) {
+        return month.format(MONTH_NAME);
+    }
+
+    private List<String> monthlyPartitions() {
+        return describe().keySet().stream()
+                .filter(name -> !name.equals(BEFORE) && !name.equals(FUTURE))
+                .collect(Collectors.toList());
+    }
+
+    private static String monthPartition(YearMonth month) {
+        LocalDate end = month.plusMonths(1).atDay(1);
+        return partition(monthPartitionName(month), "TO_DAYS('" + end + "')");
+    }
+
+    private static String partition(String name, String lessThan) {
+        return "PARTITION " + name + " VALUES LESS THAN (" + lessThan + ")";
+    }
+}
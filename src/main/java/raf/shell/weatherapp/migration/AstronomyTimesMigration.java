@@ -0,0 +1,75 @@
+package raf.shell.weatherapp.migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import raf.shell.weatherapp.ingest.WeatherCsvRowMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the former "06:04 AM" sunrise, sunset, moonrise and moonset text columns into the
+ * minutes-of-day columns Hibernate's schema update has added, fills day_length_minutes, then drops
+ * the text columns. Times are parsed with the ingest parser, so converted and newly loaded rows
+ * agree. Runs after {@link EmbeddedDetailsMigration}, which may still copy the text columns in.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+@RequiredArgsConstructor
+@Slf4j
+public class AstronomyTimesMigration implements ApplicationRunner {
+
+    private static final List<String> TEXT_COLUMNS = List.of("sunrise", "sunset", "moonrise", "moonset");
+
+    private static final String UPDATE = "UPDATE weather_records SET sunrise_minutes = ?, sunset_minutes = ?, " +
+            "moonrise_minutes = ?, moonset_minutes = ?, day_length_minutes = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${migration.astronomy-times.chunk-size:50000}")
+    private int chunkSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!TEXT_COLUMNS.stream().allMatch(this::columnExists)) return;
+
+        long start = System.nanoTime();
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM weather_records", Long.class);
+        long rows = 0;
+        // Ranges keep each batch's memory, locks and undo log bounded on large tables
+        for (long from = 0; maxId != null && from < maxId; from += chunkSize) {
+            List<Object[]> updates = new ArrayList<>();
+            jdbcTemplate.query("SELECT id, sunrise, sunset, moonrise, moonset FROM weather_records " +
+                    "WHERE id > ? AND id <= ?", rs -> {
+                Short sunrise = WeatherCsvRowMapper.parseClockTime(rs.getString(2));
+                Short sunset = WeatherCsvRowMapper.parseClockTime(rs.getString(3));
+                updates.add(new Object[]{sunrise, sunset,
+                        WeatherCsvRowMapper.parseClockTime(rs.getString(4)),
+                        WeatherCsvRowMapper.parseClockTime(rs.getString(5)),
+                        WeatherCsvRowMapper.dayLengthMinutes(sunrise, sunset),
+                        rs.getLong(1)});
+            }, from, from + chunkSize);
+            jdbcTemplate.batchUpdate(UPDATE, updates);
+            rows += updates.size();
+        }
+
+        jdbcTemplate.execute("ALTER TABLE weather_records DROP COLUMN sunrise, DROP COLUMN sunset, " +
+                "DROP COLUMN moonrise, DROP COLUMN moonset");
+        log.info("Converted astronomy times of {} rows to minutes of day in {} ms", rows,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private boolean columnExists(String column) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'weather_records' AND COLUMN_NAME = ?",
+                Integer.class, column);
+        return count != null && count > 0;
+    }
+}
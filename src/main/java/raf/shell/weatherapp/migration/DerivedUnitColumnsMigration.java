@@ -0,0 +1,53 @@
+package raf.shell.weatherapp.migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Drops the imperial unit columns weather_records used to store next to their metric values;
+ * WeatherRecordDTO now derives them when a record is serialized. Hibernate's schema update
+ * never removes columns, so without this they would keep widening every row.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+@Slf4j
+public class DerivedUnitColumnsMigration implements ApplicationRunner {
+
+    private static final List<String> DERIVED_COLUMNS = List.of("temperature_fahrenheit", "feels_like_fahrenheit",
+            "visibility_miles", "wind_mph", "gust_mph", "pressure_in", "precip_in");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> existing = DERIVED_COLUMNS.stream()
+                .filter(this::columnExists)
+                .collect(Collectors.toList());
+        if (existing.isEmpty()) return;
+
+        long start = System.nanoTime();
+        // One ALTER so the table is rebuilt once rather than once per column
+        jdbcTemplate.execute("ALTER TABLE weather_records " + existing.stream()
+                .map(column -> "DROP COLUMN " + column)
+                .collect(Collectors.joining(", ")));
+        log.info("Dropped derived unit columns {} from weather_records in {} ms", existing,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private boolean columnExists(String column) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'weather_records' AND COLUMN_NAME = ?",
+                Integer.class, column);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,74 @@
+package raf.shell.weatherapp.migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import raf.shell.weatherapp.dictionary.DictionaryKind;
+import raf.shell.weatherapp.dictionary.StringDictionary;
+import raf.shell.weatherapp.ingest.WeatherCsvRowMapper;
+
+import java.util.List;
+
+/**
+ * Replaces the former free-text columns with the string dictionary codes Hibernate's schema
+ * update has added next to them, then drops the text columns together with their indexes.
+ * Condition texts are normalized on the way, like at ingest. Runs after
+ * {@link EmbeddedDetailsMigration}, which may re-create moon_phase for this step to convert.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+@Slf4j
+public class DictionaryEncodingMigration implements ApplicationRunner {
+
+    private record EncodedColumn(String table, String textColumn, String codeColumn, DictionaryKind kind) {
+    }
+
+    private static final List<EncodedColumn> COLUMNS = List.of(
+            new EncodedColumn("weather_records", "condition_text", "condition_code", DictionaryKind.CONDITION),
+            new EncodedColumn("weather_records", "wind_direction", "wind_direction_code", DictionaryKind.WIND_DIRECTION),
+            new EncodedColumn("weather_records", "moon_phase", "moon_phase_code", DictionaryKind.MOON_PHASE),
+            new EncodedColumn("locations", "timezone", "timezone_code", DictionaryKind.TIMEZONE));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringDictionary stringDictionary;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (EncodedColumn column : COLUMNS) {
+            if (columnExists(column.table(), column.textColumn()) && columnExists(column.table(), column.codeColumn())) {
+                encode(column);
+            }
+        }
+    }
+
+    private void encode(EncodedColumn column) {
+        long start = System.nanoTime();
+        // Binary collation in both statements, like the dictionary's own, so values differing only
+        // in case keep their own codes instead of taking whichever spelling the column's collation returns
+        List<String> distinctValues = jdbcTemplate.queryForList("SELECT DISTINCT " + column.textColumn() +
+                " COLLATE utf8mb4_bin FROM " + column.table() + " WHERE " + column.textColumn() + " IS NOT NULL", String.class);
+
+        String update = "UPDATE " + column.table() + " SET " + column.codeColumn() + " = ? WHERE " +
+                column.textColumn() + " COLLATE utf8mb4_bin = ?";
+        for (String value : distinctValues) {
+            String stored = column.kind() == DictionaryKind.CONDITION ? WeatherCsvRowMapper.normalizeCondition(value) : value;
+            jdbcTemplate.update(update, stringDictionary.encode(column.kind(), stored), value);
+        }
+
+        jdbcTemplate.execute("ALTER TABLE " + column.table() + " DROP COLUMN " + column.textColumn());
+        log.info("Encoded {}.{} ({} distinct values) into {} in {} ms", column.table(), column.textColumn(),
+                distinctValues.size(), column.codeColumn(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
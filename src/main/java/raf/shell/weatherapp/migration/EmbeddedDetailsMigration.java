@@ -0,0 +1,116 @@
+package raf.shell.weatherapp.migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves data from the former one-to-one air_quality and astronomy tables into the embedded
+ * columns of weather_records, then drops the link columns and the old tables. Hibernate's schema
+ * update has already added the new columns by the time this runs. The copy is done in id ranges
+ * and can be re-run if it is interrupted, because the links are only dropped once it completes.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddedDetailsMigration implements ApplicationRunner {
+
+    private static final List<String> AIR_QUALITY_COLUMNS = List.of("carbon_monoxide", "ozone", "nitrogen_dioxide",
+            "sulphur_dioxide", "pm25", "pm10", "us_epa_index", "gb_defra_index");
+
+    private static final List<String> ASTRONOMY_COLUMNS = List.of("sunrise", "sunset", "moonrise", "moonset",
+            "moon_phase", "moon_illumination");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${migration.embedded-details.chunk-size:50000}")
+    private int chunkSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        boolean airQualityLinked = columnExists("weather_records", "air_quality_id") && tableExists("air_quality");
+        boolean astronomyLinked = columnExists("weather_records", "astronomy_id") && tableExists("astronomy");
+
+        if (airQualityLinked) {
+            copyInto("air_quality", "air_quality_id", AIR_QUALITY_COLUMNS);
+        }
+        if (astronomyLinked) {
+            copyInto("astronomy", "astronomy_id", ASTRONOMY_COLUMNS);
+        }
+
+        dropLink("air_quality_id");
+        dropLink("astronomy_id");
+        for (String table : List.of("air_quality", "astronomy")) {
+            for (String suffix : List.of("", "_staging", "_old")) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + table + suffix);
+            }
+        }
+        // Left over from client-side id blocks; the bulk writer now takes its ids from AUTO_INCREMENT
+        jdbcTemplate.execute("DROP TABLE IF EXISTS id_blocks");
+    }
+
+    private void copyInto(String table, String linkColumn, List<String> columns) {
+        long start = System.nanoTime();
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM weather_records", Long.class);
+        if (maxId == null) return;
+
+        // Columns since replaced by dictionary codes are re-created here and converted afterwards
+        for (String column : columns) {
+            if (!columnExists("weather_records", column)) {
+                String type = jdbcTemplate.queryForObject("SELECT COLUMN_TYPE FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", String.class, table, column);
+                jdbcTemplate.execute("ALTER TABLE weather_records ADD COLUMN " + column + " " + type);
+            }
+        }
+
+        StringBuilder assignments = new StringBuilder();
+        for (String column : columns) {
+            if (!assignments.isEmpty()) assignments.append(", ");
+            assignments.append("w.").append(column).append(" = d.").append(column);
+        }
+        String update = "UPDATE weather_records w JOIN " + table + " d ON d.id = w." + linkColumn +
+                " SET " + assignments + " WHERE w.id > ? AND w.id <= ?";
+
+        long rows = 0;
+        // Ranges keep each statement's locks and undo log bounded on large tables
+        for (long from = 0; from < maxId; from += chunkSize) {
+            rows += jdbcTemplate.update(update, from, from + chunkSize);
+        }
+        log.info("Copied {} rows from {} into weather_records in {} ms", rows, table,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void dropLink(String column) {
+        if (!columnExists("weather_records", column)) return;
+
+        List<String> constraints = jdbcTemplate.queryForList("SELECT CONSTRAINT_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'weather_records' AND COLUMN_NAME = ? " +
+                "AND REFERENCED_TABLE_NAME IS NOT NULL", String.class, column);
+        for (String constraint : constraints) {
+            jdbcTemplate.execute("ALTER TABLE weather_records DROP FOREIGN KEY `" + constraint + "`");
+        }
+        jdbcTemplate.execute("ALTER TABLE weather_records DROP COLUMN " + column);
+        log.info("Dropped weather_records.{}", column);
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,30 @@
+package raf.shell.weatherapp.migration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import raf.shell.weatherapp.ingest.WeatherPartitions;
+
+/**
+ * Partitions weather_records by month the first time the application starts on an unpartitioned
+ * table, and afterwards only adds the upcoming months. Runs last, once the other migrations have
+ * finished rewriting the table.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 4)
+@RequiredArgsConstructor
+public class PartitioningMigration implements ApplicationRunner {
+
+    private final WeatherPartitions weatherPartitions;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!weatherPartitions.isPartitioned()) {
+            weatherPartitions.partition();
+        }
+        weatherPartitions.ensureFuturePartitions();
+    }
+}
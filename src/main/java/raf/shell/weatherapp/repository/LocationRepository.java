@@ -1,7 +1,10 @@
 package raf.shell.weatherapp.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import raf.shell.weatherapp.entity.Location;
 
@@ -19,9 +22,22 @@ public interface LocationRepository extends JpaRepository<Location, Long> {
 
     List<Location> findByLocationNameContainingIgnoreCase(String locationName);
 
+    List<Location> findByLocationNameStartingWithIgnoreCaseOrderByLocationName(String locationName, Pageable pageable);
+
     @Query("SELECT DISTINCT l.country FROM Location l ORDER BY l.country")
     List<String> findAllCountries();
 
     @Query("SELECT COUNT(DISTINCT l.country) FROM Location l")
     Long countDistinctCountries();
+
+    Slice<Location> findAllBy(Pageable pageable);
+
+    // Keyset pagination along the (country, location_name) unique index
+    @Query("SELECT l FROM Location l ORDER BY l.country, l.locationName")
+    List<Location> findOrderedByName(Pageable pageable);
+
+    @Query("SELECT l FROM Location l WHERE l.country > :country " +
+           "OR (l.country = :country AND l.locationName > :locationName) ORDER BY l.country, l.locationName")
+    List<Location> findByNameAfter(@Param("country") String country, @Param("locationName") String locationName,
+                                   Pageable pageable);
 }
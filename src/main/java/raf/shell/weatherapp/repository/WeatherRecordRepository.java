@@ -1,25 +1,81 @@
 package raf.shell.weatherapp.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import raf.shell.weatherapp.entity.WeatherRecord;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 public interface WeatherRecordRepository extends JpaRepository<WeatherRecord, Long> {
 
+    // Streaming queries fetch the location in the same row, because MySQL cannot run other
+    // statements on a connection while a streamed result set is open
+    String STREAM_SELECT = "SELECT w FROM WeatherRecord w JOIN FETCH w.location l ";
+
+    // Connector/J streams rows one at a time instead of buffering the result set when the fetch size is MIN_VALUE
+    String STREAMING_FETCH_SIZE = "" + Integer.MIN_VALUE;
+
+    // Half-open window on the partitioning column, so MySQL only reads the months it spans
+    String IN_WINDOW = "WHERE w.lastUpdated >= :from AND w.lastUpdated < :to ";
+
+    // Methods annotated with the details graph back the API endpoints and load a record together
+    // with its location in one statement
+    @Override
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    Page<WeatherRecord> findAll(Pageable pageable);
+
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    Optional<WeatherRecord> findDetailedById(Long id);
+
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
     List<WeatherRecord> findByLocationId(Long locationId);
 
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    List<WeatherRecord> findByIdIn(Collection<Long> ids);
+
+    // Records at each location's newest epoch; locations with several such records return all of them
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    @Query("SELECT w FROM WeatherRecord w WHERE w.location.id IN :locationIds AND w.lastUpdatedEpoch = " +
+           "(SELECT MAX(w2.lastUpdatedEpoch) FROM WeatherRecord w2 WHERE w2.location.id = w.location.id)")
+    List<WeatherRecord> findLatestByLocationIds(@Param("locationIds") Collection<Long> locationIds);
+
+    // Loads ranked ids by primary key and returns the records in the ranking's order
+    default List<WeatherRecord> findByIdInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, WeatherRecord> records = findByIdIn(ids).stream()
+                .collect(Collectors.toMap(WeatherRecord::getId, Function.identity()));
+        return ids.stream()
+                .map(records::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
     @Query("SELECT w FROM WeatherRecord w WHERE w.location.country = :country")
     List<WeatherRecord> findByCountry(@Param("country") String country);
 
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
     List<WeatherRecord> findByConditionText(String conditionText);
 
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
     @Query("SELECT w FROM WeatherRecord w WHERE w.temperatureCelsius BETWEEN :min AND :max")
     List<WeatherRecord> findByTemperatureRange(@Param("min") Double min, @Param("max") Double max);
 
@@ -38,16 +94,92 @@ public interface WeatherRecordRepository extends JpaRepository<WeatherRecord, Lo
     @Query("SELECT w.location.country, AVG(w.temperatureCelsius) FROM WeatherRecord w GROUP BY w.location.country ORDER BY AVG(w.temperatureCelsius) DESC")
     List<Object[]> findAverageTemperatureByCountry();
 
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
     @Query("SELECT w FROM WeatherRecord w ORDER BY w.temperatureCelsius DESC")
-    Page<WeatherRecord> findHottestLocations(Pageable pageable);
+    List<WeatherRecord> findHottestLocations(Pageable pageable);
 
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
     @Query("SELECT w FROM WeatherRecord w ORDER BY w.temperatureCelsius ASC")
-    Page<WeatherRecord> findColdestLocations(Pageable pageable);
+    List<WeatherRecord> findColdestLocations(Pageable pageable);
+
+    @Query("SELECT w.location.id, MAX(w.lastUpdatedEpoch) FROM WeatherRecord w GROUP BY w.location.id")
+    List<Object[]> findLatestEpochByLocation();
 
-    @Query("SELECT w FROM WeatherRecord w WHERE w.location.country = :country OR w.location.locationName LIKE %:query%")
-    Page<WeatherRecord> searchByCountryOrLocation(@Param("country") String country, @Param("query") String query, Pageable pageable);
+    // Per-location sums used to seed the in-memory aggregates
+    @Query("SELECT w.location.id, w.location.country, w.location.latitude, w.location.longitude, COUNT(w), " +
+           "SUM(w.temperatureCelsius), COUNT(w.temperatureCelsius), SUM(w.humidity), COUNT(w.humidity), " +
+           "SUM(w.pressureMb), COUNT(w.pressureMb) " +
+           "FROM WeatherRecord w GROUP BY w.location.id, w.location.country, w.location.latitude, w.location.longitude")
+    List<Object[]> findLocationAggregates();
 
     @Query("SELECT w.location.country, COUNT(w), COUNT(DISTINCT w.location), AVG(w.temperatureCelsius), AVG(w.humidity), AVG(w.location.latitude), AVG(w.location.longitude) " +
            "FROM WeatherRecord w GROUP BY w.location.country")
     List<Object[]> findCountryStatistics();
+
+    // Day lengths are stored in minutes at ingest, so these only sum a SMALLINT column
+    @Query("SELECT w.location.country, SUM(w.astronomy.dayLengthMinutes), COUNT(w.astronomy.dayLengthMinutes) " +
+           "FROM WeatherRecord w WHERE w.astronomy.dayLengthMinutes IS NOT NULL " +
+           "GROUP BY w.location.country ORDER BY w.location.country")
+    List<Object[]> sumDayLengthByCountry();
+
+    @Query("SELECT FLOOR(w.location.latitude), SUM(w.astronomy.dayLengthMinutes), COUNT(w.astronomy.dayLengthMinutes) " +
+           "FROM WeatherRecord w WHERE w.astronomy.dayLengthMinutes IS NOT NULL AND w.location.latitude IS NOT NULL " +
+           "GROUP BY FLOOR(w.location.latitude)")
+    List<Object[]> sumDayLengthByLatitudeDegree();
+
+    // Page without the COUNT(*) query a Page needs
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    Slice<WeatherRecord> findAllBy(Pageable pageable);
+
+    @Query(STREAM_SELECT + "WHERE l.country = :country")
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAMING_FETCH_SIZE),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<WeatherRecord> streamByCountry(@Param("country") String country);
+
+    @Query(STREAM_SELECT + "WHERE w.conditionText = :conditionText")
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAMING_FETCH_SIZE),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<WeatherRecord> streamByConditionText(@Param("conditionText") String conditionText);
+
+    @Query(STREAM_SELECT + "WHERE w.temperatureCelsius BETWEEN :min AND :max")
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAMING_FETCH_SIZE),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<WeatherRecord> streamByTemperatureRange(@Param("min") Double min, @Param("max") Double max);
+
+    @Query(STREAM_SELECT + "WHERE l.id = :locationId")
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAMING_FETCH_SIZE),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<WeatherRecord> streamByLocationId(@Param("locationId") Long locationId);
+
+    // Keyset pagination, newest first; MySQL sorts null epochs last in descending order
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    @Query("SELECT w FROM WeatherRecord w ORDER BY w.lastUpdatedEpoch DESC, w.id DESC")
+    List<WeatherRecord> findNewest(Pageable pageable);
+
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    @Query("SELECT w FROM WeatherRecord w WHERE w.lastUpdatedEpoch < :epoch " +
+           "OR (w.lastUpdatedEpoch = :epoch AND w.id < :id) OR w.lastUpdatedEpoch IS NULL " +
+           "ORDER BY w.lastUpdatedEpoch DESC, w.id DESC")
+    List<WeatherRecord> findNewestAfter(@Param("epoch") Long epoch, @Param("id") Long id, Pageable pageable);
+
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    @Query("SELECT w FROM WeatherRecord w WHERE w.lastUpdatedEpoch IS NULL AND w.id < :id ORDER BY w.id DESC")
+    List<WeatherRecord> findWithoutEpochAfter(@Param("id") Long id, Pageable pageable);
+
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    @Query(value = "SELECT w FROM WeatherRecord w " + IN_WINDOW + "ORDER BY w.lastUpdated DESC, w.id DESC",
+           countQuery = "SELECT COUNT(w) FROM WeatherRecord w " + IN_WINDOW)
+    Page<WeatherRecord> findInWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to, Pageable pageable);
+
+    @EntityGraph(WeatherRecord.DETAILS_GRAPH)
+    @Query("SELECT w FROM WeatherRecord w " + IN_WINDOW + "ORDER BY w.lastUpdated DESC, w.id DESC")
+    Slice<WeatherRecord> findSliceInWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to, Pageable pageable);
+
+    @Query("SELECT w.conditionText, COUNT(w) FROM WeatherRecord w " + IN_WINDOW +
+           "GROUP BY w.conditionText ORDER BY COUNT(w) DESC")
+    List<Object[]> countByConditionInWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT w.location.country, AVG(w.temperatureCelsius) FROM WeatherRecord w " + IN_WINDOW +
+           "GROUP BY w.location.country ORDER BY AVG(w.temperatureCelsius) DESC")
+    List<Object[]> findAverageTemperatureByCountryInWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
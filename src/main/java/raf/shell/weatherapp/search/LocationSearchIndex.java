@@ -0,0 +1,197 @@
+package raf.shell.weatherapp.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory name index over locations. Names are folded (accents stripped, lower case,
+ * punctuation to single spaces) and indexed twice: a sorted map of the words and whole names of
+ * location and country for prefix lookups, and posting lists of the location name's trigrams for
+ * substring and typo-tolerant lookups. Locations are only ever added, so entry numbers and the
+ * posting lists stay in insertion order. Not thread-safe.
+ */
+public final class LocationSearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Letters that do not decompose into a base letter and a mark
+    private static final String[][] LETTERS = {
+            {"ß", "ss"}, {"æ", "ae"}, {"œ", "oe"}, {"ø", "o"}, {"đ", "d"}, {"ł", "l"}, {"ı", "i"}, {"þ", "th"}
+    };
+
+    // Lower ranks first: the whole name, a name prefix, a word or country prefix, a substring, a near match
+    private static final int EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+    private static final int FUZZY = 4;
+
+    public record Match(long locationId, String locationName, String country, long recordCount) {
+    }
+
+    private static final class Entry {
+        private final long locationId;
+        private final String locationName;
+        private final String country;
+        private final String foldedName;
+        private long recordCount;
+
+        private Entry(long locationId, String locationName, String country) {
+            this.locationId = locationId;
+            this.locationName = locationName;
+            this.country = country;
+            this.foldedName = fold(locationName);
+        }
+    }
+
+    private record Candidate(Entry entry, int rank) {
+    }
+
+    private static final Comparator<Candidate> RANKING = Comparator.comparingInt(Candidate::rank)
+            .thenComparing(candidate -> candidate.entry().recordCount, Comparator.reverseOrder())
+            .thenComparing(candidate -> candidate.entry().foldedName)
+            .thenComparing(candidate -> candidate.entry().locationId);
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private final TreeMap<String, List<Integer>> prefixes = new TreeMap<>();
+    private final Map<String, List<Integer>> trigrams = new HashMap<>();
+
+    public static String fold(String value) {
+        if (value == null) return "";
+        String folded = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFKD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String[] letter : LETTERS) {
+            folded = folded.replace(letter[0], letter[1]);
+        }
+        return SEPARATORS.matcher(folded).replaceAll(" ").trim();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Known locations are left as they are; names do not change once stored
+    public void addLocation(long locationId, String locationName, String country) {
+        if (positions.containsKey(locationId)) return;
+        Entry entry = new Entry(locationId, locationName, country);
+        int position = entries.size();
+        entries.add(entry);
+        positions.put(locationId, position);
+
+        Set<String> keys = new LinkedHashSet<>();
+        String foldedCountry = fold(country);
+        for (String folded : List.of(entry.foldedName, foldedCountry)) {
+            if (folded.isEmpty()) continue;
+            keys.add(folded);
+            keys.addAll(List.of(folded.split(" ")));
+        }
+        for (String key : keys) {
+            prefixes.computeIfAbsent(key, k -> new ArrayList<>()).add(position);
+        }
+        for (String trigram : trigramsOf(entry.foldedName)) {
+            trigrams.computeIfAbsent(trigram, k -> new ArrayList<>()).add(position);
+        }
+    }
+
+    public void addRecords(long locationId, long records) {
+        Integer position = positions.get(locationId);
+        if (position != null) {
+            entries.get(position).recordCount += records;
+        }
+    }
+
+    /**
+     * Up to {@code limit} locations for a partially typed query, best first: matches on the whole
+     * name, then name prefixes, word and country prefixes, substrings of the name and finally
+     * names sharing at least half the query's trigrams. Ties go to the location with more records.
+     */
+    public List<Match> autocomplete(String query, int limit) {
+        String folded = fold(query);
+        if (folded.isEmpty() || limit <= 0) return List.of();
+
+        Map<Integer, Integer> ranks = new HashMap<>();
+        for (List<Integer> positionsWithPrefix : prefixes.subMap(folded, true, folded + Character.MAX_VALUE, true).values()) {
+            for (int position : positionsWithPrefix) {
+                String name = entries.get(position).foldedName;
+                int rank = name.equals(folded) ? EXACT : name.startsWith(folded) ? NAME_PREFIX : WORD_PREFIX;
+                ranks.merge(position, rank, Math::min);
+            }
+        }
+        Set<String> queryTrigrams = trigramsOf(folded);
+        if (!queryTrigrams.isEmpty()) {
+            trigramHits(queryTrigrams).forEach((position, hits) -> {
+                if (ranks.containsKey(position)) return;
+                if (hits == queryTrigrams.size() && entries.get(position).foldedName.contains(folded)) {
+                    ranks.put(position, SUBSTRING);
+                } else if (hits * 2 >= queryTrigrams.size()) {
+                    ranks.put(position, FUZZY);
+                }
+            });
+        }
+
+        List<Candidate> candidates = new ArrayList<>(ranks.size());
+        ranks.forEach((position, rank) -> candidates.add(new Candidate(entries.get(position), rank)));
+        candidates.sort(RANKING);
+        List<Match> matches = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Candidate candidate : candidates.subList(0, Math.min(limit, candidates.size()))) {
+            Entry entry = candidate.entry();
+            matches.add(new Match(entry.locationId, entry.locationName, entry.country, entry.recordCount));
+        }
+        return matches;
+    }
+
+    // Ids of the locations whose folded name contains the folded query, in insertion order
+    public List<Long> containing(String query) {
+        String folded = fold(query);
+        List<Long> ids = new ArrayList<>();
+        Set<String> queryTrigrams = trigramsOf(folded);
+        if (queryTrigrams.isEmpty()) {
+            // Too short for trigrams; a pass over the names is still cheap next to a table scan
+            for (Entry entry : entries) {
+                if (entry.foldedName.contains(folded)) {
+                    ids.add(entry.locationId);
+                }
+            }
+            return ids;
+        }
+        List<Integer> matching = new ArrayList<>();
+        trigramHits(queryTrigrams).forEach((position, hits) -> {
+            if (hits == queryTrigrams.size() && entries.get(position).foldedName.contains(folded)) {
+                matching.add(position);
+            }
+        });
+        matching.sort(null);
+        for (int position : matching) {
+            ids.add(entries.get(position).locationId);
+        }
+        return ids;
+    }
+
+    private Map<Integer, Integer> trigramHits(Set<String> queryTrigrams) {
+        Map<Integer, Integer> hits = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (int position : trigrams.getOrDefault(trigram, List.of())) {
+                hits.merge(position, 1, Integer::sum);
+            }
+        }
+        return hits;
+    }
+
+    private static Set<String> trigramsOf(String folded) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            trigrams.add(folded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
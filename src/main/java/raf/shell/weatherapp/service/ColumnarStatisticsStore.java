@@ -0,0 +1,161 @@
+package raf.shell.weatherapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.columnar.ColumnarTable;
+import raf.shell.weatherapp.dictionary.DictionaryKind;
+import raf.shell.weatherapp.dictionary.StringDictionary;
+import raf.shell.weatherapp.dto.ConditionCount;
+import raf.shell.weatherapp.dto.CountryStatistics;
+import raf.shell.weatherapp.dto.CountryTemperature;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+import raf.shell.weatherapp.repository.WeatherRecordRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the statistics columns of weather_records in a {@link ColumnarTable}, loaded in one
+ * streamed scan on reset and extended from ingest events. Unlike the running sums of
+ * {@link StatisticsAggregateStore}, every answer is a parallel scan of the rows, so the same
+ * table also serves hottest/coldest and can take new kinds of aggregates without new state.
+ * Averages follow the same SQL AVG semantics.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ColumnarStatisticsStore {
+
+    private static final String SCAN = "SELECT id, location_id, condition_code, temperature_celsius, humidity, pressure_mb " +
+            "FROM weather_records";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringDictionary stringDictionary;
+    private final WeatherRecordRepository weatherRecordRepository;
+
+    @Value("${statistics.columnar.enabled:false}")
+    private boolean enabled;
+
+    private volatile ColumnarTable table;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener
+    @Order(0)
+    public void onReset(WeatherDataResetEvent event) {
+        if (!enabled) return;
+        ready = false;
+        long start = System.nanoTime();
+
+        ColumnarTable loaded = new ColumnarTable();
+        jdbcTemplate.query("SELECT id, country, latitude, longitude FROM locations", (RowCallbackHandler) rs ->
+                loaded.addLocation(rs.getLong(1), rs.getString(2), nullableDouble(rs, 3), nullableDouble(rs, 4)));
+        // Streamed, so the load holds one row of the result set at a time
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            return statement;
+        }, (RowCallbackHandler) rs -> loaded.append(rs.getLong(1), rs.getLong(2), rs.getInt(3),
+                nullableDouble(rs, 4), nullableInteger(rs, 5), nullableDouble(rs, 6)));
+        loaded.publish();
+
+        synchronized (this) {
+            table = loaded;
+        }
+        ready = true;
+        log.info("Loaded {} rows into the columnar statistics store in {} ms",
+                loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @EventListener
+    @Order(0)
+    public synchronized void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        if (!ready) return;
+        for (WeatherRecord record : event.records()) {
+            Location location = record.getLocation();
+            table.addLocation(location.getId(), location.getCountry(), location.getLatitude(), location.getLongitude());
+            Integer condition = stringDictionary.encode(DictionaryKind.CONDITION, record.getConditionText());
+            table.append(record.getId(), location.getId(), condition != null ? condition : 0,
+                    record.getTemperatureCelsius(), record.getHumidity(), record.getPressureMb());
+        }
+        table.publish();
+    }
+
+    public StatisticsAggregateStore.Snapshot snapshot() {
+        ColumnarTable.Summary summary = table.summarize();
+
+        List<ConditionCount> conditionDistribution = new ArrayList<>();
+        long[] conditionCounts = summary.conditionCounts();
+        for (int code = 0; code < conditionCounts.length; code++) {
+            if (conditionCounts[code] > 0) {
+                conditionDistribution.add(new ConditionCount(code == 0 ? null : stringDictionary.decode(code), conditionCounts[code]));
+            }
+        }
+        conditionDistribution.sort(Comparator.comparing(ConditionCount::getCount).reversed()
+                .thenComparing(ConditionCount::getCondition, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<CountryTemperature> temperatureByCountry = new ArrayList<>(summary.countries().size());
+        List<CountryStatistics> countryStatistics = new ArrayList<>(summary.countries().size());
+        for (Map.Entry<String, ColumnarTable.CountrySums> entry : summary.countries().entrySet()) {
+            ColumnarTable.CountrySums sums = entry.getValue();
+            Double averageTemperature = StatisticsAggregateStore.average(sums.temperatureSum, sums.temperatureCount);
+            temperatureByCountry.add(new CountryTemperature(entry.getKey(), averageTemperature));
+            countryStatistics.add(CountryStatistics.builder()
+                    .country(entry.getKey())
+                    .recordCount(sums.records)
+                    .locationCount(sums.locations)
+                    .averageTemperature(averageTemperature)
+                    .averageHumidity(StatisticsAggregateStore.integerAverage(sums.humiditySum, sums.humidityCount))
+                    .latitude(StatisticsAggregateStore.average(sums.latitudeSum, sums.latitudeCount))
+                    .longitude(StatisticsAggregateStore.average(sums.longitudeSum, sums.longitudeCount))
+                    .build());
+        }
+        temperatureByCountry.sort(Comparator.comparing(CountryTemperature::getAverageTemperature,
+                        StatisticsAggregateStore.NULLS_LAST_DESCENDING)
+                .thenComparing(CountryTemperature::getCountry));
+        countryStatistics.sort(Comparator.comparing(CountryStatistics::getCountry));
+
+        ColumnarTable.Sums totals = summary.totals();
+        return new StatisticsAggregateStore.Snapshot(totals.records,
+                StatisticsAggregateStore.average(totals.temperatureSum, totals.temperatureCount),
+                StatisticsAggregateStore.integerAverage(totals.humiditySum, totals.humidityCount),
+                StatisticsAggregateStore.average(totals.pressureSum, totals.pressureCount),
+                conditionDistribution, temperatureByCountry, countryStatistics);
+    }
+
+    // Records without a temperature are left out, where SQL would sort them last (hottest) or first (coldest)
+    public List<WeatherRecord> hottest(int limit) {
+        return weatherRecordRepository.findByIdInOrder(table.topByTemperature(limit, true));
+    }
+
+    public List<WeatherRecord> coldest(int limit) {
+        return weatherRecordRepository.findByIdInOrder(table.topByTemperature(limit, false));
+    }
+
+    private static Double nullableDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Integer nullableInteger(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -1,200 +1,470 @@
 package raf.shell.weatherapp.service;
 
 import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvValidationException;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import raf.shell.weatherapp.entity.AirQuality;
-import raf.shell.weatherapp.entity.Astronomy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import raf.shell.weatherapp.entity.Location;
 import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+import raf.shell.weatherapp.ingest.CsvIngestPipeline;
+import raf.shell.weatherapp.ingest.CsvInputFiles;
+import raf.shell.weatherapp.ingest.EpochWatermarks;
+import raf.shell.weatherapp.ingest.IngestJob;
+import raf.shell.weatherapp.ingest.IngestMode;
+import raf.shell.weatherapp.ingest.LocationIndex;
+import raf.shell.weatherapp.ingest.StagingTables;
+import raf.shell.weatherapp.ingest.WeatherBulkWriter;
+import raf.shell.weatherapp.ingest.WeatherCsvRowMapper;
+import raf.shell.weatherapp.ingest.WeatherCsvTokenizer;
+import raf.shell.weatherapp.ingest.WeatherPartitions;
 import raf.shell.weatherapp.repository.LocationRepository;
 import raf.shell.weatherapp.repository.WeatherRecordRepository;
 
-import java.io.FileReader;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CsvDataLoaderService {
 
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
     private final LocationRepository locationRepository;
     private final WeatherRecordRepository weatherRecordRepository;
+    private final WeatherBulkWriter weatherBulkWriter;
+    private final StagingTables stagingTables;
+    private final WeatherPartitions weatherPartitions;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
 
+    @Getter
     @Value("${csv.file.path:data/GlobalWeatherRepository.csv}")
     private String csvFilePath;
 
-    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    @Value("${csv.ingest.parser-threads:0}")
+    private int parserThreads;
+
+    @Value("${csv.ingest.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${csv.ingest.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${csv.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${csv.ingest.jdbc-bulk-insert:true}")
+    private boolean jdbcBulkInsert;
+
+    @Value("${csv.ingest.mapped-tokenizer:true}")
+    private boolean mappedTokenizer;
+
+    @Value("${csv.ingest.parallel-files:2}")
+    private int parallelFiles;
+
+    public void loadCsvData(IngestJob job) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        try {
+            List<Path> files = job.getInputs() != null ? job.getInputs() : CsvInputFiles.resolve(csvFilePath);
+            log.info("Starting {} CSV data load of {} file(s) from: {}", job.getMode(), files.size(), job.getSource());
+
+            long bytesTotal = 0;
+            Map<Path, IngestJob.FileProgress> progress = new LinkedHashMap<>();
+            for (Path file : files) {
+                long size = Files.size(file);
+                bytesTotal += size;
+                progress.put(file, job.addFile(file.toString(), size));
+            }
+            job.start(bytesTotal);
+
+            if (job.getMode() == IngestMode.INITIAL && weatherRecordRepository.count() > 0) {
+                log.info("Data already loaded. Skipping CSV import.");
+                job.complete("Data already loaded. Skipping CSV import.");
+                return;
+            }
+
+            // Shards are independent, so several are read at once and share the parser cores
+            int concurrency = Math.max(1, Math.min(parallelFiles, files.size()));
+            int threadsPerFile = Math.max(1, resolveParserThreads() / concurrency);
+
+            // Phase 1: every location the files reference exists before any fact is written, and
+            // every month they cover has its own partition
+            long phaseStart = System.nanoTime();
+            Set<YearMonth> months = new HashSet<>();
+            LocationIndex locationIndex = resolveLocations(files, concurrency, transactionTemplate, months);
+            job.phaseCompleted("locations", elapsedMillis(phaseStart));
+
+            // Rows at or below the per-location epochs already stored are skipped, and so are rows
+            // without an epoch, which an incremental load cannot match. Initial loads and reloads start
+            // from empty tables and keep those, but still drop rows repeated within the files, which
+            // uk_location_epoch would otherwise reject along with their whole batch.
+            EpochWatermarks watermarks = job.getMode() == IngestMode.INCREMENTAL
+                    ? loadWatermarks()
+                    : EpochWatermarks.empty();
+
+            // Months get their partitions before any of their rows arrive, and staging tables copy them
+            weatherPartitions.ensurePartitions(months);
 
-    @Transactional
-    public void loadCsvData() {
-        log.info("Starting CSV data load from: {}", csvFilePath);
+            // A reload writes into staging tables that replace the live ones only once complete
+            boolean reload = job.getMode() == IngestMode.RELOAD;
+            boolean initial = job.getMode() == IngestMode.INITIAL;
+            String factTableSuffix = reload ? StagingTables.SUFFIX : null;
+            if (reload) {
+                stagingTables.prepare();
+            }
+
+            long totalLoaded;
+            long factMillis;
+            boolean swapped = false;
+            boolean factsLoaded = false;
+            try {
+                // Phase 2: facts, with locations resolved from the in-memory index only
+                phaseStart = System.nanoTime();
+                List<Long> loaded = forEachFile(files, concurrency, file -> {
+                    IngestJob.FileProgress fileProgress = progress.get(file);
+                    fileProgress.loading();
+                    try {
+                        long count = loadFacts(file, threadsPerFile, locationIndex, watermarks, factTableSuffix,
+                                transactionTemplate, fileProgress);
+                        fileProgress.done();
+                        log.info("Loaded {} records from {}", count, file);
+                        return count;
+                    } catch (Exception e) {
+                        fileProgress.failed();
+                        throw e;
+                    }
+                });
+                factsLoaded = true;
+                totalLoaded = loaded.stream().mapToLong(Long::longValue).sum();
+                factMillis = elapsedMillis(phaseStart);
+                job.phaseCompleted("facts", factMillis);
 
-        if (weatherRecordRepository.count() > 0) {
-            log.info("Data already loaded. Skipping CSV import.");
-            return;
+                if (reload) {
+                    phaseStart = System.nanoTime();
+                    stagingTables.buildIndexes();
+                    job.phaseCompleted("indexes", elapsedMillis(phaseStart));
+
+                    phaseStart = System.nanoTime();
+                    stagingTables.swap();
+                    swapped = true;
+                    job.phaseCompleted("swap", elapsedMillis(phaseStart));
+                    eventPublisher.publishEvent(new WeatherDataResetEvent());
+                }
+            } finally {
+                // Failed or cancelled reloads leave the live tables untouched
+                if (reload && !swapped) {
+                    stagingTables.discard();
+                }
+                // An initial load starts from an empty table, so emptying it again undoes a failed or
+                // cancelled one and the next initial load does not mistake its rows for a finished dataset
+                if (initial && !factsLoaded) {
+                    discardRecords();
+                }
+            }
+
+            log.info("CSV data load complete ({} files, {} writer). Total records: {} in {} ms ({} rows/s)",
+                    files.size(), jdbcBulkInsert || reload ? "jdbc" : "jpa", totalLoaded, factMillis,
+                    Math.round(totalLoaded * 1000.0 / Math.max(factMillis, 1)));
+            job.complete("Data loaded successfully. Total records: " + job.toStatus().getRowsPersisted());
+        } catch (IOException e) {
+            log.error("Error loading CSV data", e);
+            throw new RuntimeException("Failed to load CSV data", e);
+        }
+    }
+
+    private void discardRecords() {
+        try {
+            jdbcTemplate.execute("TRUNCATE TABLE weather_records");
+            eventPublisher.publishEvent(new WeatherDataResetEvent());
+            log.info("Removed the records of an incomplete initial load");
+        } catch (RuntimeException e) {
+            log.error("Failed to remove the records of an incomplete initial load", e);
+        }
+    }
+
+    // Also collects the months of the rows' last_updated into `months`
+    private LocationIndex resolveLocations(List<Path> files, int concurrency, TransactionTemplate transactionTemplate,
+                                           Set<YearMonth> months) throws IOException {
+        LocationIndex locationIndex = new LocationIndex();
+        for (Location location : locationRepository.findAll()) {
+            locationIndex.put(location);
         }
+        int existing = locationIndex.size();
+
+        // Each file collects its distinct locations and months; they are merged afterwards
+        List<FileScan> scans = forEachFile(files, concurrency, this::scanFile);
+
+        List<Location> newLocations = new ArrayList<>();
+        for (FileScan scan : scans) {
+            months.addAll(scan.months());
+            for (Location location : scan.locations()) {
+                if (locationIndex.get(location.getCountry(), location.getLocationName()) == null) {
+                    locationIndex.put(location);
+                    newLocations.add(location);
+                }
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (jdbcBulkInsert) {
+                weatherBulkWriter.insertLocations(newLocations);
+            } else {
+                locationRepository.saveAll(newLocations);
+            }
+        });
+
+        log.info("Resolved {} locations ({} existing, {} inserted)", locationIndex.size(), existing, newLocations.size());
+        return locationIndex;
+    }
+
+    private record FileScan(List<Location> locations, Set<YearMonth> months) {
+    }
 
-        Map<String, Location> locationCache = new HashMap<>();
-        List<WeatherRecord> batchRecords = new ArrayList<>();
-        int batchSize = 1000;
-        int totalLoaded = 0;
+    private FileScan scanFile(Path file) throws IOException, CsvValidationException {
+        LocationIndex seen = new LocationIndex();
+        List<Location> locations = new ArrayList<>();
+        Set<YearMonth> months = new HashSet<>();
 
-        try (CSVReader reader = new CSVReader(new FileReader(csvFilePath))) {
-            List<String[]> allRows = reader.readAll();
+        WeatherCsvTokenizer tokenizer = openTokenizer(file);
+        if (tokenizer != null) {
+            WeatherCsvTokenizer.RowCursor cursor = tokenizer.cursor();
+            WeatherCsvTokenizer.RowSpan row;
+            while ((row = cursor.readNext()) != null) {
+                tokenizer.resolveLocation(row, seen, locations, months);
+            }
+            return new FileScan(locations, months);
+        }
 
+        try (CSVReader reader = new CSVReader(CsvInputFiles.openReader(file, bytes -> { }))) {
             // Skip header row
-            for (int i = 1; i < allRows.size(); i++) {
-                String[] row = allRows.get(i);
-                try {
-                    WeatherRecord record = parseCsvRow(row, locationCache);
-                    if (record != null) {
-                        batchRecords.add(record);
-
-                        if (batchRecords.size() >= batchSize) {
-                            weatherRecordRepository.saveAll(batchRecords);
-                            totalLoaded += batchRecords.size();
-                            log.info("Loaded {} records...", totalLoaded);
-                            batchRecords.clear();
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn("Error parsing row {}: {}", i, e.getMessage());
+            reader.skip(1);
+
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                if (row.length < WeatherCsvRowMapper.COLUMN_COUNT) continue;
+                months.add(YearMonth.from(WeatherCsvRowMapper.lastUpdated(WeatherCsvRowMapper.parseDateTime(row[6]),
+                        WeatherCsvRowMapper.parseLong(row[5]))));
+                if (seen.get(row[0], row[1]) == null) {
+                    Location location = WeatherCsvRowMapper.toLocation(row);
+                    seen.put(location);
+                    locations.add(location);
                 }
             }
+        }
+        return new FileScan(locations, months);
+    }
 
-            // Save remaining records
-            if (!batchRecords.isEmpty()) {
-                weatherRecordRepository.saveAll(batchRecords);
-                totalLoaded += batchRecords.size();
+    private long loadFacts(Path file, int threads, LocationIndex locationIndex, EpochWatermarks watermarks,
+                           String factTableSuffix, TransactionTemplate transactionTemplate,
+                           IngestJob.FileProgress progress) throws IOException {
+        // Each batch commits on its own so no single transaction spans the whole file
+        Consumer<List<WeatherRecord>> writer = batch -> {
+            List<WeatherRecord> saved = writeBatch(batch, watermarks, factTableSuffix, transactionTemplate);
+            progress.rowsSkipped(batch.size() - saved.size());
+            // Staged rows only become visible with the swap, which resets the views instead
+            if (factTableSuffix == null && !saved.isEmpty()) {
+                eventPublisher.publishEvent(new WeatherRecordsAddedEvent(saved));
             }
+        };
 
-            log.info("CSV data load complete. Total records: {}", totalLoaded);
-        } catch (IOException | CsvException e) {
-            log.error("Error loading CSV data", e);
-            throw new RuntimeException("Failed to load CSV data", e);
+        WeatherCsvTokenizer tokenizer = openTokenizer(file);
+        if (tokenizer != null) {
+            CsvIngestPipeline<WeatherCsvTokenizer.RowSpan, WeatherRecord> pipeline = new CsvIngestPipeline<>(
+                    threads, queueCapacity, chunkSize, batchSize);
+            WeatherCsvTokenizer.RowCursor cursor = tokenizer.cursor();
+            return pipeline.run(() -> {
+                WeatherCsvTokenizer.RowSpan row = cursor.readNext();
+                if (row != null) {
+                    progress.addBytesRead(row.length() + 1);
+                }
+                return row;
+            }, row -> tokenizer.parseRecord(row, locationIndex), writer, progress);
+        }
+
+        CsvIngestPipeline<String[], WeatherRecord> pipeline = new CsvIngestPipeline<>(
+                threads, queueCapacity, chunkSize, batchSize);
+        try (CSVReader reader = new CSVReader(CsvInputFiles.openReader(file, progress::addBytesRead))) {
+            // Skip header row
+            reader.skip(1);
+
+            return pipeline.run(reader::readNext, row -> WeatherCsvRowMapper.toRecord(row, locationIndex), writer, progress);
         }
     }
 
-    private WeatherRecord parseCsvRow(String[] row, Map<String, Location> locationCache) {
-        if (row.length < 41) {
+    // Null when the file is compressed or otherwise has to go through OpenCSV
+    private WeatherCsvTokenizer openTokenizer(Path file) throws IOException {
+        if (!mappedTokenizer || CsvInputFiles.isCompressed(file) || !WeatherCsvTokenizer.canMap(file)) {
             return null;
         }
+        return WeatherCsvTokenizer.map(file);
+    }
 
-        // Get or create location
-        String country = row[0];
-        String locationName = row[1];
-        String locationKey = country + "|" + locationName;
-
-        Location location = locationCache.get(locationKey);
-        if (location == null) {
-            location = locationRepository.findByCountryAndLocationName(country, locationName)
-                    .orElseGet(() -> {
-                        Location newLocation = new Location();
-                        newLocation.setCountry(country);
-                        newLocation.setLocationName(locationName);
-                        newLocation.setLatitude(parseDouble(row[2]));
-                        newLocation.setLongitude(parseDouble(row[3]));
-                        newLocation.setTimezone(row[4]);
-                        return locationRepository.save(newLocation);
-                    });
-            locationCache.put(locationKey, location);
-        }
-
-        // Create air quality
-        AirQuality airQuality = new AirQuality();
-        airQuality.setCarbonMonoxide(parseDouble(row[27]));
-        airQuality.setOzone(parseDouble(row[28]));
-        airQuality.setNitrogenDioxide(parseDouble(row[29]));
-        airQuality.setSulphurDioxide(parseDouble(row[30]));
-        airQuality.setPm25(parseDouble(row[31]));
-        airQuality.setPm10(parseDouble(row[32]));
-        airQuality.setUsEpaIndex(parseInteger(row[33]));
-        airQuality.setGbDefraIndex(parseInteger(row[34]));
-
-        // Create astronomy
-        Astronomy astronomy = new Astronomy();
-        astronomy.setSunrise(row[35]);
-        astronomy.setSunset(row[36]);
-        astronomy.setMoonrise(row[37]);
-        astronomy.setMoonset(row[38]);
-        astronomy.setMoonPhase(row[39]);
-        astronomy.setMoonIllumination(parseInteger(row[40]));
-
-        // Create weather record
-        WeatherRecord record = new WeatherRecord();
-        record.setLocation(location);
-        record.setAirQuality(airQuality);
-        record.setAstronomy(astronomy);
-        record.setLastUpdatedEpoch(parseLong(row[5]));
-        record.setLastUpdated(parseDateTime(row[6]));
-        record.setTemperatureCelsius(parseDouble(row[7]));
-        record.setTemperatureFahrenheit(parseDouble(row[8]));
-        record.setConditionText(row[9]);
-        record.setWindMph(parseDouble(row[10]));
-        record.setWindKph(parseDouble(row[11]));
-        record.setWindDegree(parseInteger(row[12]));
-        record.setWindDirection(row[13]);
-        record.setPressureMb(parseDouble(row[14]));
-        record.setPressureIn(parseDouble(row[15]));
-        record.setPrecipMm(parseDouble(row[16]));
-        record.setPrecipIn(parseDouble(row[17]));
-        record.setHumidity(parseInteger(row[18]));
-        record.setCloud(parseInteger(row[19]));
-        record.setFeelsLikeCelsius(parseDouble(row[20]));
-        record.setFeelsLikeFahrenheit(parseDouble(row[21]));
-        record.setVisibilityKm(parseDouble(row[22]));
-        record.setVisibilityMiles(parseDouble(row[23]));
-        record.setUvIndex(parseDouble(row[24]));
-        record.setGustMph(parseDouble(row[25]));
-        record.setGustKph(parseDouble(row[26]));
-
-        return record;
-    }
-
-    private Double parseDouble(String value) {
-        if (value == null || value.isEmpty()) return null;
-        try {
-            return Double.parseDouble(value);
-        } catch (NumberFormatException e) {
-            return null;
+    // A shard written concurrently can commit one of the batch's rows between its lookup and its
+    // insert; uk_location_epoch then rejects the batch and the retry's lookup finds the row
+    private List<WeatherRecord> writeBatch(List<WeatherRecord> batch, EpochWatermarks watermarks, String factTableSuffix,
+                                           TransactionTemplate transactionTemplate) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> saveBatch(batch, watermarks, factTableSuffix));
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_BATCH_ATTEMPTS) throw e;
+                log.debug("Batch collided with a concurrently written row, retrying: {}", e.getMessage());
+            }
         }
     }
 
-    private Integer parseInteger(String value) {
-        if (value == null || value.isEmpty()) return null;
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return null;
+    // A non-null suffix redirects the facts to those tables, which only the JDBC writer supports
+    private List<WeatherRecord> saveBatch(List<WeatherRecord> batch, EpochWatermarks watermarks, String factTableSuffix) {
+        List<WeatherRecord> records = filterNewRecords(batch, watermarks, factTableSuffix != null ? factTableSuffix : "");
+
+        if (factTableSuffix != null) {
+            weatherBulkWriter.insertRecords(records, factTableSuffix);
+        } else if (jdbcBulkInsert) {
+            weatherBulkWriter.insertRecords(records);
+        } else {
+            // A retried batch still carries the ids of its rolled-back attempt
+            records.forEach(record -> record.setId(null));
+            weatherRecordRepository.saveAll(records);
+        }
+        return records;
+    }
+
+    private EpochWatermarks loadWatermarks() {
+        Map<Long, Long> latestEpochs = new HashMap<>();
+        for (Object[] row : weatherRecordRepository.findLatestEpochByLocation()) {
+            latestEpochs.put((Long) row[0], (Long) row[1]);
         }
+        log.info("Loaded high-water marks for {} locations", latestEpochs.size());
+        return EpochWatermarks.of(latestEpochs);
     }
 
-    private Long parseLong(String value) {
-        if (value == null || value.isEmpty()) return null;
+    // Rows above the stored epochs, less those repeated within the batch or written earlier in the load.
+    // The lookup runs on uk_location_epoch in the batch's transaction, so memory stays bounded by the batch.
+    // Kept rows without an epoch pass as they are: the unique key never matches a NULL epoch.
+    private List<WeatherRecord> filterNewRecords(List<WeatherRecord> batch, EpochWatermarks watermarks, String tableSuffix) {
+        Map<WeatherBulkWriter.EpochKey, WeatherRecord> candidates = new LinkedHashMap<>();
+        List<WeatherRecord> undated = new ArrayList<>();
+        for (WeatherRecord record : batch) {
+            Long locationId = record.getLocation().getId();
+            Long epoch = record.getLastUpdatedEpoch();
+            if (!watermarks.isNew(locationId, epoch)) continue;
+
+            if (epoch == null) {
+                undated.add(record);
+            } else {
+                candidates.putIfAbsent(new WeatherBulkWriter.EpochKey(locationId, epoch), record);
+            }
+        }
+        if (!candidates.isEmpty()) {
+            candidates.keySet().removeAll(weatherBulkWriter.findStoredEpochs(candidates.keySet(), tableSuffix));
+        }
+        List<WeatherRecord> records = new ArrayList<>(candidates.values());
+        records.addAll(undated);
+        return records;
+    }
+
+    @FunctionalInterface
+    private interface FileTask<T> {
+        T run(Path file) throws Exception;
+    }
+
+    // Runs the task for every file on up to `concurrency` threads; results keep the file order
+    private <T> List<T> forEachFile(List<Path> files, int concurrency, FileTask<T> task) throws IOException {
+        if (concurrency <= 1) {
+            List<T> results = new ArrayList<>(files.size());
+            for (Path file : files) {
+                results.add(runTask(task, file));
+            }
+            return results;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "csv-shard-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException e) {
-            return null;
+            List<Future<T>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                futures.add(executor.submit(() -> runTask(task, file)));
+            }
+
+            List<T> results = new ArrayList<>(files.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while loading CSV files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            // Waits for shards still writing after another failed, so nothing commits behind the caller's cleanup
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.warn("CSV shard threads still running after cancellation");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    private LocalDateTime parseDateTime(String value) {
-        if (value == null || value.isEmpty()) return null;
+    private static <T> T runTask(FileTask<T> task, Path file) throws IOException {
         try {
-            return LocalDateTime.parse(value, DATE_TIME_FORMATTER);
+            return task.run(file);
+        } catch (IOException | RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            return null;
+            throw new RuntimeException("Failed to read " + file, e);
         }
     }
+
+    private int resolveParserThreads() {
+        return parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
 }
@@ -0,0 +1,141 @@
+package raf.shell.weatherapp.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.ingest.CsvInputFiles;
+import raf.shell.weatherapp.ingest.IngestMode;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional watch mode: shards that appear in the csv.file.path directory are loaded
+ * incrementally once they have stopped growing.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CsvWatchService {
+
+    private static final long POLL_MILLIS = 1000;
+
+    private final IngestJobService ingestJobService;
+    private final CsvDataLoaderService csvDataLoaderService;
+
+    @Value("${csv.ingest.watch:false}")
+    private boolean watchEnabled;
+
+    @Value("${csv.ingest.watch-settle-seconds:5}")
+    private long settleSeconds;
+
+    private volatile WatchService watchService;
+
+    // Files seen but not yet submitted, with the size/time they were last seen changing
+    private final Map<Path, PendingFile> pending = new LinkedHashMap<>();
+
+    private record PendingFile(long size, long changedAtMillis) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!watchEnabled) return;
+
+        String location = csvDataLoaderService.getCsvFilePath();
+        Path directory = CsvInputFiles.baseDirectory(location);
+        if (!Files.isDirectory(directory)) {
+            log.warn("CSV watch mode enabled but {} is not a directory", directory);
+            return;
+        }
+
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(() -> watch(directory, CsvInputFiles.matcher(location)), "csv-watch");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching {} for new CSV shards", directory);
+    }
+
+    private void watch(Path directory, PathMatcher matcher) {
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                        Path file = directory.resolve((Path) event.context());
+                        if (matcher.matches(file)) {
+                            pending.put(file, new PendingFile(-1, System.currentTimeMillis()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        log.warn("Stopped watching {}", directory);
+                        return;
+                    }
+                }
+                submitSettledFiles();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    // A shard is submitted once its size has not changed for settleSeconds
+    private void submitSettledFiles() {
+        if (pending.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        List<Path> settled = new ArrayList<>();
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            Path file = entry.getKey();
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                // Deleted or renamed before it settled
+                iterator.remove();
+                continue;
+            }
+            if (size != entry.getValue().size()) {
+                entry.setValue(new PendingFile(size, now));
+            } else if (now - entry.getValue().changedAtMillis() >= settleSeconds * 1000) {
+                settled.add(file);
+            }
+        }
+
+        // Retried on the next poll while another load is running
+        if (!settled.isEmpty() && ingestJobService.submit(IngestMode.INCREMENTAL, settled).isPresent()) {
+            log.info("Submitted {} new CSV shard(s): {}", settled.size(), settled);
+            settled.forEach(pending::remove);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package raf.shell.weatherapp.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic version of the stored dataset, bumped whenever ingested data becomes visible.
+ * Prefixed with the start time, so versions from an earlier run never match.
+ */
+@Service
+public class DatasetVersion {
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    // Bumped after the in-memory views have applied the change, so a response computed under the
+    // new version never reflects the old data
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onReset(WeatherDataResetEvent event) {
+        version.incrementAndGet();
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    // Quoted strong ETag for responses derived only from the dataset
+    public String etag() {
+        return "\"" + bootId + "-" + version.get() + "\"";
+    }
+}
@@ -0,0 +1,162 @@
+package raf.shell.weatherapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+import raf.shell.weatherapp.sketch.KllSketch;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One {@link KllSketch} per country and metric, built by a streamed scan on reset and updated
+ * from ingest events. Queries merge the sketches of the countries they cover, so the global
+ * distribution costs one merge per country rather than a sort of weather_records. Each sketch
+ * is sized by {@code statistics.distribution.sketch-bytes}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DistributionStore {
+
+    public enum Metric {
+        TEMPERATURE("temperature_celsius", WeatherRecord::getTemperatureCelsius),
+        HUMIDITY("humidity", record -> record.getHumidity() != null ? record.getHumidity().doubleValue() : null),
+        PRESSURE("pressure_mb", WeatherRecord::getPressureMb),
+        WIND("wind_kph", WeatherRecord::getWindKph),
+        // US EPA air quality index, 1 (good) to 6 (hazardous)
+        AQI("us_epa_index", record -> record.getAirQuality() != null && record.getAirQuality().getUsEpaIndex() != null
+                ? record.getAirQuality().getUsEpaIndex().doubleValue() : null);
+
+        private final String column;
+        private final Function<WeatherRecord, Double> value;
+
+        Metric(String column, Function<WeatherRecord, Double> value) {
+            this.column = column;
+            this.value = value;
+        }
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private static final String SCAN = "SELECT l.country, " +
+            Arrays.stream(METRICS).map(metric -> "w." + metric.column).collect(Collectors.joining(", ")) +
+            " FROM weather_records w JOIN locations l ON l.id = w.location_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${statistics.distribution.enabled:true}")
+    private boolean enabled;
+
+    @Value("${statistics.distribution.sketch-bytes:8192}")
+    private long sketchBytes;
+
+    private final Map<String, KllSketch[]> countries = new HashMap<>();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int sketchK() {
+        return KllSketch.kForBudget(sketchBytes);
+    }
+
+    @EventListener
+    @Order(0)
+    public void onReset(WeatherDataResetEvent event) {
+        if (!enabled) return;
+        ready = false;
+        long start = System.nanoTime();
+
+        Map<String, KllSketch[]> loaded = scan(null);
+        synchronized (this) {
+            countries.clear();
+            countries.putAll(loaded);
+        }
+        ready = true;
+        log.info("Rebuilt distribution sketches for {} countries in {} ms", loaded.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @EventListener
+    @Order(0)
+    public synchronized void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        if (!ready) return;
+        for (WeatherRecord record : event.records()) {
+            KllSketch[] sketches = countries.computeIfAbsent(record.getLocation().getCountry(), key -> newSketches());
+            for (Metric metric : METRICS) {
+                Double value = metric.value.apply(record);
+                if (value != null) {
+                    sketches[metric.ordinal()].update(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sketches of the metric by country, limited to {@code country} when given. They are copies,
+     * or the result of a scan when the store has not been built.
+     */
+    public SortedMap<String, KllSketch> sketches(Metric metric, String country) {
+        SortedMap<String, KllSketch> sketches = new TreeMap<>();
+        if (!ready) {
+            scan(country).forEach((name, metrics) -> sketches.put(name, metrics[metric.ordinal()]));
+            return sketches;
+        }
+        synchronized (this) {
+            countries.forEach((name, metrics) -> {
+                if (country == null || country.equals(name)) {
+                    sketches.put(name, metrics[metric.ordinal()].copy());
+                }
+            });
+        }
+        return sketches;
+    }
+
+    // Streamed, so the scan holds one row of the result set at a time
+    private Map<String, KllSketch[]> scan(String country) {
+        Map<String, KllSketch[]> scanned = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN + (country != null ? " WHERE l.country = ?" : ""),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            if (country != null) {
+                statement.setString(1, country);
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            KllSketch[] sketches = scanned.computeIfAbsent(rs.getString(1), key -> newSketches());
+            for (int metric = 0; metric < METRICS.length; metric++) {
+                double value = rs.getDouble(2 + metric);
+                if (!rs.wasNull()) {
+                    sketches[metric].update(value);
+                }
+            }
+        });
+        return scanned;
+    }
+
+    private KllSketch[] newSketches() {
+        KllSketch[] sketches = new KllSketch[METRICS.length];
+        for (int metric = 0; metric < METRICS.length; metric++) {
+            sketches[metric] = new KllSketch(sketchK());
+        }
+        return sketches;
+    }
+}
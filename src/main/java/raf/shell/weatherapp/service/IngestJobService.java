@@ -0,0 +1,162 @@
+package raf.shell.weatherapp.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.ingest.IngestJob;
+import raf.shell.weatherapp.ingest.IngestMode;
+import raf.shell.weatherapp.ingest.WeatherPartitions;
+
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestJobService {
+
+    private static final int MAX_RETAINED_JOBS = 20;
+
+    private final CsvDataLoaderService csvDataLoaderService;
+    private final WeatherPartitions weatherPartitions;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Tests that rebuild a store themselves turn this off, so no startup rebuild races theirs
+    @Value("${csv.ingest.build-views-on-startup:true}")
+    private boolean buildViewsOnStartup;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ingest-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, IngestJob> jobs = new LinkedHashMap<>();
+    private IngestJob activeJob;
+
+    // Runs on the ingest thread, so in-memory views are built before any job can commit a batch
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildDerivedViews() {
+        if (!buildViewsOnStartup) return;
+        executor.execute(() -> {
+            try {
+                eventPublisher.publishEvent(new WeatherDataResetEvent());
+            } catch (Exception e) {
+                log.error("Failed to build in-memory views of the stored data", e);
+            }
+        });
+    }
+
+    // Empty when another job is still queued or running
+    public Optional<IngestJob> submit(IngestMode mode) {
+        return submit(mode, null);
+    }
+
+    // Loads only the given files instead of everything csv.file.path resolves to
+    public synchronized Optional<IngestJob> submit(IngestMode mode, List<Path> inputs) {
+        if (activeJob != null && activeJob.isActive()) {
+            return Optional.empty();
+        }
+
+        String source = inputs != null
+                ? inputs.stream().map(Path::toString).collect(Collectors.joining(", "))
+                : csvDataLoaderService.getCsvFilePath();
+        IngestJob job = new IngestJob(UUID.randomUUID().toString(), source, mode, inputs);
+        activeJob = job;
+        jobs.put(job.getId(), job);
+        evictFinishedJobs();
+
+        executor.execute(() -> run(job));
+        return Optional.of(job);
+    }
+
+    public synchronized Optional<IngestJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public synchronized Optional<IngestJob> getActiveJob() {
+        return Optional.ofNullable(activeJob).filter(IngestJob::isActive);
+    }
+
+    public synchronized List<IngestJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    public Optional<IngestJob> cancel(String id) {
+        Optional<IngestJob> job = getJob(id);
+        job.ifPresent(IngestJob::requestCancel);
+        return job;
+    }
+
+    /**
+     * Drops the weather_records partitions of the months before {@code month} on the ingest thread,
+     * so it never overlaps a load, and rebuilds the in-memory views. Empty while a job is active.
+     */
+    public Optional<List<String>> dropPartitionsBefore(YearMonth month, boolean includeBefore) {
+        Future<List<String>> dropped;
+        synchronized (this) {
+            if (activeJob != null && activeJob.isActive()) {
+                return Optional.empty();
+            }
+            dropped = executor.submit(() -> {
+                List<String> names = weatherPartitions.dropBefore(month, includeBefore);
+                eventPublisher.publishEvent(new WeatherDataResetEvent());
+                return names;
+            });
+        }
+
+        try {
+            return Optional.of(dropped.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dropping partitions", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to drop partitions before " + month, e.getCause());
+        }
+    }
+
+    private void run(IngestJob job) {
+        if (job.isCancelled()) {
+            job.cancelled();
+            return;
+        }
+
+        try {
+            csvDataLoaderService.loadCsvData(job);
+        } catch (CancellationException e) {
+            log.info("Ingest job {} cancelled: {}", job.getId(), e.getMessage());
+            job.cancelled();
+        } catch (Exception e) {
+            log.error("Ingest job {} failed", job.getId(), e);
+            job.fail(e);
+        }
+    }
+
+    private void evictFinishedJobs() {
+        jobs.values().removeIf(job -> jobs.size() > MAX_RETAINED_JOBS && !job.isActive());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        getActiveJob().ifPresent(IngestJob::requestCancel);
+        executor.shutdownNow();
+    }
+}
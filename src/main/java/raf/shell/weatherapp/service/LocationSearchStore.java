@@ -0,0 +1,78 @@
+package raf.shell.weatherapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+import raf.shell.weatherapp.search.LocationSearchIndex;
+
+import java.util.List;
+
+/**
+ * Keeps a {@link LocationSearchIndex} of every location with its record count, rebuilt on reset
+ * and extended with the locations and records of each ingest batch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LocationSearchStore {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${locations.search-index.enabled:true}")
+    private boolean enabled;
+
+    private LocationSearchIndex index = new LocationSearchIndex();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener
+    @Order(0)
+    public void onReset(WeatherDataResetEvent event) {
+        if (!enabled) return;
+        ready = false;
+        long start = System.nanoTime();
+
+        LocationSearchIndex loaded = new LocationSearchIndex();
+        jdbcTemplate.query("SELECT id, location_name, country FROM locations", (RowCallbackHandler) rs ->
+                loaded.addLocation(rs.getLong(1), rs.getString(2), rs.getString(3)));
+        jdbcTemplate.query("SELECT location_id, COUNT(*) FROM weather_records GROUP BY location_id", (RowCallbackHandler) rs ->
+                loaded.addRecords(rs.getLong(1), rs.getLong(2)));
+
+        synchronized (this) {
+            index = loaded;
+        }
+        ready = true;
+        log.info("Indexed {} location names in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @EventListener
+    @Order(0)
+    public synchronized void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        if (!ready) return;
+        for (WeatherRecord record : event.records()) {
+            Location location = record.getLocation();
+            index.addLocation(location.getId(), location.getLocationName(), location.getCountry());
+            index.addRecords(location.getId(), 1);
+        }
+    }
+
+    public synchronized List<LocationSearchIndex.Match> autocomplete(String query, int limit) {
+        return index.autocomplete(query, limit);
+    }
+
+    public synchronized List<Long> idsContaining(String query) {
+        return index.containing(query);
+    }
+}
@@ -3,18 +3,36 @@ package raf.shell.weatherapp.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.dto.CursorPage;
+import raf.shell.weatherapp.dto.LocationDTO;
+import raf.shell.weatherapp.dto.LocationSuggestion;
+import raf.shell.weatherapp.dto.NearbyLocation;
+import raf.shell.weatherapp.dto.UnitSystem;
+import raf.shell.weatherapp.dto.WeatherRecordDTO;
 import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
 import raf.shell.weatherapp.repository.LocationRepository;
+import raf.shell.weatherapp.spatial.SpatialIndex;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class LocationService {
 
     private final LocationRepository locationRepository;
+    private final SingleFlight singleFlight;
+    private final LocationSearchStore locationSearchStore;
+    private final SpatialIndexStore spatialIndexStore;
+    private final WeatherService weatherService;
 
     public List<Location> getAllLocations() {
         return locationRepository.findAll();
@@ -24,6 +42,38 @@ public class LocationService {
         return locationRepository.findAll(PageRequest.of(page, size));
     }
 
+    public Slice<Location> getLocationsSlice(int page, int size) {
+        return locationRepository.findAllBy(PageRequest.of(page, size));
+    }
+
+    /**
+     * Locations ordered by country and name, continuing after {@code cursor} (null for the first
+     * page). The pair is unique, so it identifies the last row without an id tie-breaker.
+     */
+    public CursorPage<Location> getLocationsAfter(String cursor, int size) {
+        // One extra row tells whether another page follows
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<Location> locations;
+        if (cursor == null) {
+            locations = locationRepository.findOrderedByName(limit);
+        } else {
+            List<String> key = KeysetCursor.decode(cursor, 2);
+            if (key.contains(null)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            locations = locationRepository.findByNameAfter(key.get(0), key.get(1), limit);
+        }
+
+        boolean hasNext = locations.size() > size;
+        List<Location> content = hasNext ? locations.subList(0, size) : locations;
+        String nextCursor = null;
+        if (hasNext) {
+            Location last = content.get(content.size() - 1);
+            nextCursor = KeysetCursor.encode(last.getCountry(), last.getLocationName());
+        }
+        return new CursorPage<>(content, content.size(), nextCursor, hasNext);
+    }
+
     public Optional<Location> getLocationById(Long id) {
         return locationRepository.findById(id);
     }
@@ -36,7 +86,52 @@ public class LocationService {
         return locationRepository.findAllCountries();
     }
 
+    // Names containing the query, ignoring case and accents like the column's collation
     public List<Location> searchLocations(String query) {
-        return locationRepository.findByLocationNameContainingIgnoreCase(query);
+        if (locationSearchStore.isReady()) {
+            List<Location> locations = locationRepository.findAllById(locationSearchStore.idsContaining(query));
+            locations.sort(Comparator.comparing(Location::getId));
+            return locations;
+        }
+        return singleFlight.execute("search:" + query,
+                () -> locationRepository.findByLocationNameContainingIgnoreCase(query));
+    }
+
+    public List<LocationSuggestion> autocomplete(String query, int limit) {
+        if (locationSearchStore.isReady()) {
+            return locationSearchStore.autocomplete(query, limit).stream()
+                    .map(match -> new LocationSuggestion(match.locationId(), match.locationName(), match.country(),
+                            match.recordCount()))
+                    .collect(Collectors.toList());
+        }
+        return singleFlight.execute("autocomplete:" + query + ":" + limit, () ->
+                locationRepository.findByLocationNameStartingWithIgnoreCaseOrderByLocationName(query, PageRequest.of(0, limit))
+                        .stream()
+                        .map(location -> new LocationSuggestion(location.getId(), location.getLocationName(),
+                                location.getCountry(), null))
+                        .collect(Collectors.toList()));
+    }
+
+    // The k locations closest to the point, nearest first, each with its latest record
+    public List<NearbyLocation> getNearby(double latitude, double longitude, int k, UnitSystem units) {
+        List<SpatialIndex.Neighbour> neighbours = spatialIndexStore.nearest(latitude, longitude, k);
+        List<Long> ids = neighbours.stream().map(SpatialIndex.Neighbour::id).collect(Collectors.toList());
+        Map<Long, Location> locations = locationRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Location::getId, Function.identity()));
+        Map<Long, WeatherRecord> latest = weatherService.getLatestRecords(ids).stream()
+                .collect(Collectors.toMap(record -> record.getLocation().getId(), Function.identity()));
+
+        List<NearbyLocation> nearby = new ArrayList<>(neighbours.size());
+        for (SpatialIndex.Neighbour neighbour : neighbours) {
+            Location location = locations.get(neighbour.id());
+            if (location == null) continue;
+            WeatherRecord record = latest.get(neighbour.id());
+            nearby.add(NearbyLocation.builder()
+                    .location(LocationDTO.fromEntity(location))
+                    .distanceKm(neighbour.distanceKm())
+                    .latest(record != null ? WeatherRecordDTO.fromEntity(record, units) : null)
+                    .build());
+        }
+        return nearby;
     }
 }
@@ -0,0 +1,63 @@
+package raf.shell.weatherapp.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency of API reads, kept separately for requests served while an ingest job was running,
+ * so a reload can be compared against steady state.
+ */
+@Service
+public class ReadLatencyMetrics {
+
+    // Percentiles come from the most recent requests of each kind
+    private static final int WINDOW = 10_000;
+
+    private final Window steady = new Window();
+    private final Window duringIngest = new Window();
+
+    private static class Window {
+        private final long[] micros = new long[WINDOW];
+        private long count;
+        private long max;
+
+        synchronized void record(long value) {
+            micros[(int) (count++ % WINDOW)] = value;
+            max = Math.max(max, value);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            int size = (int) Math.min(count, WINDOW);
+            long[] sorted = Arrays.copyOf(micros, size);
+            Arrays.sort(sorted);
+
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", count);
+            snapshot.put("p50Millis", percentile(sorted, 0.50));
+            snapshot.put("p95Millis", percentile(sorted, 0.95));
+            snapshot.put("p99Millis", percentile(sorted, 0.99));
+            snapshot.put("maxMillis", max / 1000.0);
+            return snapshot;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) return 0;
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1000.0;
+        }
+    }
+
+    public void record(long nanos, boolean ingestRunning) {
+        (ingestRunning ? duringIngest : steady).record(nanos / 1000);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("steady", steady.snapshot());
+        snapshot.put("duringIngest", duringIngest.snapshot());
+        return snapshot;
+    }
+}
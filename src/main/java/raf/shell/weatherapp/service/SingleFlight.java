@@ -0,0 +1,102 @@
+package raf.shell.weatherapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing: concurrent callers with the same key share one in-flight computation and
+ * its result (or exception). Nothing is kept once the computation finishes; caching is
+ * {@link StatisticsCache}'s job. Shared results must be treated as read-only.
+ */
+@Service
+public class SingleFlight {
+
+    @Value("${single-flight.enabled:true}")
+    private boolean enabled = true;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // Per key prefix (the part before the first ':'), e.g. "statistics" or "search"
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private static class Counters {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> computation) {
+        Counters keyCounters = counters.computeIfAbsent(prefix(key), prefix -> new Counters());
+        if (!enabled) {
+            keyCounters.executions.increment();
+            return computation.get();
+        }
+
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            keyCounters.coalesced.increment();
+            return (T) await(existing);
+        }
+
+        keyCounters.executions.increment();
+        try {
+            T result = computation.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Object> byPrefix = new LinkedHashMap<>();
+        long executions = 0;
+        long coalesced = 0;
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            long keyExecutions = entry.getValue().executions.sum();
+            long keyCoalesced = entry.getValue().coalesced.sum();
+            executions += keyExecutions;
+            coalesced += keyCoalesced;
+            byPrefix.put(entry.getKey(), Map.of("executions", keyExecutions, "coalesced", keyCoalesced));
+        }
+        stats.put("executions", executions);
+        // Callers that received another caller's result instead of running the query themselves
+        stats.put("executionsSaved", coalesced);
+        stats.put("inFlight", inFlight.size());
+        stats.put("byPrefix", byPrefix);
+        return stats;
+    }
+
+    private static Object await(CompletableFuture<Object> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            // Rethrow what the leader saw, so followers fail the same way
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static String prefix(String key) {
+        int separator = key.indexOf(':');
+        return separator > 0 ? key.substring(0, separator) : key;
+    }
+}
@@ -0,0 +1,92 @@
+package raf.shell.weatherapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+import raf.shell.weatherapp.spatial.SpatialIndex;
+
+import java.util.List;
+
+/**
+ * Keeps a {@link SpatialIndex} of every location with coordinates, rebuilt on reset and extended
+ * with the new locations of each ingest batch. Before it has been built, queries load the
+ * locations into a throwaway index.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SpatialIndexStore {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${locations.spatial-index.enabled:true}")
+    private boolean enabled;
+
+    private SpatialIndex index = new SpatialIndex();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener
+    @Order(0)
+    public void onReset(WeatherDataResetEvent event) {
+        if (!enabled) return;
+        ready = false;
+        long start = System.nanoTime();
+
+        SpatialIndex loaded = load();
+        synchronized (this) {
+            index = loaded;
+        }
+        ready = true;
+        log.info("Built spatial index of {} locations in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @EventListener
+    @Order(0)
+    public synchronized void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        if (!ready) return;
+        for (WeatherRecord record : event.records()) {
+            Location location = record.getLocation();
+            if (location.getLatitude() != null && location.getLongitude() != null) {
+                index.add(location.getId(), location.getLatitude(), location.getLongitude());
+            }
+        }
+    }
+
+    public List<SpatialIndex.Neighbour> nearest(double latitude, double longitude, int k) {
+        if (!ready) {
+            return load().nearest(latitude, longitude, k);
+        }
+        synchronized (this) {
+            return index.nearest(latitude, longitude, k);
+        }
+    }
+
+    public List<Long> within(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude, int limit) {
+        if (!ready) {
+            return load().within(minLatitude, maxLatitude, minLongitude, maxLongitude, limit);
+        }
+        synchronized (this) {
+            return index.within(minLatitude, maxLatitude, minLongitude, maxLongitude, limit);
+        }
+    }
+
+    private SpatialIndex load() {
+        SpatialIndex loaded = new SpatialIndex();
+        jdbcTemplate.query("SELECT id, latitude, longitude FROM locations WHERE latitude IS NOT NULL AND longitude IS NOT NULL",
+                (RowCallbackHandler) rs -> loaded.add(rs.getLong(1), rs.getDouble(2), rs.getDouble(3)));
+        return loaded;
+    }
+}
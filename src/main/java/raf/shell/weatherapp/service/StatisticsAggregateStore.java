@@ -0,0 +1,219 @@
+package raf.shell.weatherapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.dto.ConditionCount;
+import raf.shell.weatherapp.dto.CountryStatistics;
+import raf.shell.weatherapp.dto.CountryTemperature;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+import raf.shell.weatherapp.repository.WeatherRecordRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Running sums and counts per country and per condition, maintained from ingest events, so the
+ * statistics endpoints are answered without scanning weather_records. Averages follow the SQL
+ * AVG semantics of the queries they replace: nulls are ignored, an all-null group averages to
+ * null and integer columns are rounded to four decimals like MySQL's DECIMAL AVG.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatisticsAggregateStore {
+
+    static final Comparator<Double> NULLS_LAST_DESCENDING =
+            Comparator.nullsLast(Comparator.<Double>reverseOrder());
+
+    private final WeatherRecordRepository weatherRecordRepository;
+
+    @Value("${statistics.aggregates.enabled:true}")
+    private boolean enabled;
+
+    private static class Sums {
+        private long records;
+        private double temperatureSum;
+        private long temperatureCount;
+        private long humiditySum;
+        private long humidityCount;
+        private double pressureSum;
+        private long pressureCount;
+    }
+
+    private static class CountrySums extends Sums {
+        private final Set<Long> locationIds = new HashSet<>();
+        private double latitudeSum;
+        private long latitudeCount;
+        private double longitudeSum;
+        private long longitudeCount;
+    }
+
+    public record Snapshot(long totalRecords, Double averageTemperature, Double averageHumidity,
+                           Double averagePressure, List<ConditionCount> conditionDistribution,
+                           List<CountryTemperature> temperatureByCountry, List<CountryStatistics> countryStatistics) {
+    }
+
+    private final Sums totals = new Sums();
+    private final Map<String, CountrySums> countries = new HashMap<>();
+    private final Map<String, Long> conditions = new HashMap<>();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener
+    @Order(0)
+    public void onReset(WeatherDataResetEvent event) {
+        if (!enabled) return;
+        ready = false;
+        long start = System.nanoTime();
+
+        List<Object[]> locationRows = weatherRecordRepository.findLocationAggregates();
+        List<Object[]> conditionRows = weatherRecordRepository.countByCondition();
+
+        synchronized (this) {
+            clear(totals);
+            countries.clear();
+            conditions.clear();
+
+            for (Object[] row : locationRows) {
+                long records = (Long) row[4];
+                CountrySums country = countries.computeIfAbsent((String) row[1], key -> new CountrySums());
+                country.locationIds.add((Long) row[0]);
+
+                Double latitude = (Double) row[2];
+                if (latitude != null) {
+                    country.latitudeSum += latitude * records;
+                    country.latitudeCount += records;
+                }
+                Double longitude = (Double) row[3];
+                if (longitude != null) {
+                    country.longitudeSum += longitude * records;
+                    country.longitudeCount += records;
+                }
+
+                for (Sums sums : List.of(totals, country)) {
+                    sums.records += records;
+                    sums.temperatureSum += row[5] != null ? (Double) row[5] : 0;
+                    sums.temperatureCount += (Long) row[6];
+                    sums.humiditySum += row[7] != null ? ((Number) row[7]).longValue() : 0;
+                    sums.humidityCount += (Long) row[8];
+                    sums.pressureSum += row[9] != null ? (Double) row[9] : 0;
+                    sums.pressureCount += (Long) row[10];
+                }
+            }
+            for (Object[] row : conditionRows) {
+                conditions.put((String) row[0], (Long) row[1]);
+            }
+        }
+
+        ready = true;
+        log.info("Rebuilt statistics aggregates for {} countries and {} conditions in {} ms",
+                countries.size(), conditions.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @EventListener
+    @Order(0)
+    public synchronized void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        if (!ready) return;
+        for (WeatherRecord record : event.records()) {
+            Location location = record.getLocation();
+            CountrySums country = countries.computeIfAbsent(location.getCountry(), key -> new CountrySums());
+            country.locationIds.add(location.getId());
+            if (location.getLatitude() != null) {
+                country.latitudeSum += location.getLatitude();
+                country.latitudeCount++;
+            }
+            if (location.getLongitude() != null) {
+                country.longitudeSum += location.getLongitude();
+                country.longitudeCount++;
+            }
+            add(totals, record);
+            add(country, record);
+            conditions.merge(record.getConditionText(), 1L, Long::sum);
+        }
+    }
+
+    public synchronized Snapshot snapshot() {
+        List<ConditionCount> conditionDistribution = new ArrayList<>(conditions.size());
+        conditions.forEach((condition, count) -> conditionDistribution.add(new ConditionCount(condition, count)));
+        conditionDistribution.sort(Comparator.comparing(ConditionCount::getCount).reversed()
+                .thenComparing(ConditionCount::getCondition, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<CountryTemperature> temperatureByCountry = new ArrayList<>(countries.size());
+        List<CountryStatistics> countryStatistics = new ArrayList<>(countries.size());
+        countries.forEach((country, sums) -> {
+            Double averageTemperature = average(sums.temperatureSum, sums.temperatureCount);
+            temperatureByCountry.add(new CountryTemperature(country, averageTemperature));
+            countryStatistics.add(CountryStatistics.builder()
+                    .country(country)
+                    .recordCount(sums.records)
+                    .locationCount((long) sums.locationIds.size())
+                    .averageTemperature(averageTemperature)
+                    .averageHumidity(integerAverage(sums.humiditySum, sums.humidityCount))
+                    .latitude(average(sums.latitudeSum, sums.latitudeCount))
+                    .longitude(average(sums.longitudeSum, sums.longitudeCount))
+                    .build());
+        });
+        temperatureByCountry.sort(Comparator.comparing(CountryTemperature::getAverageTemperature, NULLS_LAST_DESCENDING)
+                .thenComparing(CountryTemperature::getCountry));
+        countryStatistics.sort(Comparator.comparing(CountryStatistics::getCountry));
+
+        return new Snapshot(totals.records,
+                average(totals.temperatureSum, totals.temperatureCount),
+                integerAverage(totals.humiditySum, totals.humidityCount),
+                average(totals.pressureSum, totals.pressureCount),
+                conditionDistribution, temperatureByCountry, countryStatistics);
+    }
+
+    private static void add(Sums sums, WeatherRecord record) {
+        sums.records++;
+        if (record.getTemperatureCelsius() != null) {
+            sums.temperatureSum += record.getTemperatureCelsius();
+            sums.temperatureCount++;
+        }
+        if (record.getHumidity() != null) {
+            sums.humiditySum += record.getHumidity();
+            sums.humidityCount++;
+        }
+        if (record.getPressureMb() != null) {
+            sums.pressureSum += record.getPressureMb();
+            sums.pressureCount++;
+        }
+    }
+
+    private static void clear(Sums sums) {
+        sums.records = 0;
+        sums.temperatureSum = 0;
+        sums.temperatureCount = 0;
+        sums.humiditySum = 0;
+        sums.humidityCount = 0;
+        sums.pressureSum = 0;
+        sums.pressureCount = 0;
+    }
+
+    static Double average(double sum, long count) {
+        return count > 0 ? sum / count : null;
+    }
+
+    // MySQL averages integer columns as DECIMAL with div_precision_increment (4) extra digits
+    static Double integerAverage(long sum, long count) {
+        if (count == 0) return null;
+        return BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(count), 4, RoundingMode.HALF_UP).doubleValue();
+    }
+}
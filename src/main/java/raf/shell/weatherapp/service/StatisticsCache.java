@@ -0,0 +1,128 @@
+package raf.shell.weatherapp.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache for statistics responses. Entries expire after a TTL, are tagged with the
+ * dataset version they were computed from, and are dropped whenever ingested data is committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class StatisticsCache {
+
+    private final DatasetVersion datasetVersion;
+
+    @Value("${statistics.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${statistics.cache.max-entries:256}")
+    private int maxEntries;
+
+    @Value("${statistics.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private record Entry(Object value, long version, long expiresAtNanos) {
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public <T> T get(String key, Supplier<T> loader) {
+        return get(key, loader, value -> true);
+    }
+
+    // Values rejected by the predicate (e.g. partial results) are returned but not stored
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader, Predicate<T> cacheable) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        long version = datasetVersion.current();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.version() == version && System.nanoTime() < entry.expiresAtNanos()) {
+                    hits.incrementAndGet();
+                    return (T) entry.value();
+                }
+                entries.remove(key);
+                if (entry.version() == version) {
+                    expirations.incrementAndGet();
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        // Tagged with the version read before loading, so a concurrent commit makes it stale
+        T value = loader.get();
+        if (value != null && cacheable.test(value)) {
+            put(key, new Entry(value, version, System.nanoTime() + ttlSeconds * 1_000_000_000L));
+        }
+        return value;
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    @EventListener
+    public void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onReset(WeatherDataResetEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount > 0 ? Math.round(hitCount * 1000.0 / (hitCount + missCount)) / 1000.0 : 0);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("datasetVersion", datasetVersion.current());
+        return stats;
+    }
+}
@@ -1,78 +1,408 @@
 package raf.shell.weatherapp.service;
 
+import jakarta.annotation.PostConstruct;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import raf.shell.weatherapp.dto.*;
 import raf.shell.weatherapp.entity.WeatherRecord;
 import raf.shell.weatherapp.repository.LocationRepository;
 import raf.shell.weatherapp.repository.WeatherRecordRepository;
+import raf.shell.weatherapp.sketch.KllSketch;
 
+import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class StatisticsService {
 
     private final WeatherRecordRepository weatherRecordRepository;
     private final LocationRepository locationRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final StatisticsAggregateStore aggregateStore;
+    private final ColumnarStatisticsStore columnarStore;
+    private final TopLocationsStore topLocationsStore;
+    private final DistributionStore distributionStore;
+    private final SingleFlight singleFlight;
+    private final DataSource dataSource;
 
+    // Also the number of connections the dashboard can hold at once, capped at half the Hikari pool
+    @Value("${statistics.dashboard.threads:4}")
+    private int dashboardThreads;
+
+    // Per sub-query, counted from when it starts running
+    @Value("${statistics.dashboard.timeout-ms:5000}")
+    private long dashboardTimeoutMs;
+
+    // How long a sub-query may wait for a free thread while other dashboards hold them
+    @Value("${statistics.dashboard.queue-timeout-ms:30000}")
+    private long dashboardQueueTimeoutMs;
+
+    private ExecutorService dashboardExecutor;
+    private TransactionTemplate readOnlyTransaction;
+
+    // A sub-query's result and the System.nanoTime() at which it left the queue
+    private record SubQuery<T>(CompletableFuture<Long> started, Future<T> result) {
+
+        static <T> SubQuery<T> completed(T value) {
+            return new SubQuery<>(CompletableFuture.completedFuture(System.nanoTime()), CompletableFuture.completedFuture(value));
+        }
+    }
+
+    @PostConstruct
+    void startDashboardExecutor() {
+        int threads = dashboardThreads;
+        // Leave the other half of the pool to requests and the ingest
+        if (dataSource instanceof HikariDataSource hikari) {
+            threads = Math.min(threads, Math.max(1, hikari.getMaximumPoolSize() / 2));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        dashboardExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        // A query that overruns its wait is abandoned; the timeout makes it give its connection back
+        readOnlyTransaction.setTimeout((int) Math.max(1, (dashboardTimeoutMs + 999) / 1000));
+    }
+
+    @PreDestroy
+    void stopDashboardExecutor() {
+        dashboardExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs the independent sub-queries concurrently. Any that fail, miss their deadline or wait
+     * too long for a thread are left null and listed in failedQueries.
+     */
     public DashboardStatistics getDashboardStatistics() {
-        return DashboardStatistics.builder()
-                .totalRecords(weatherRecordRepository.count())
-                .totalLocations(locationRepository.count())
-                .totalCountries(locationRepository.countDistinctCountries())
-                .averageTemperature(weatherRecordRepository.findAverageTemperature())
-                .averageHumidity(weatherRecordRepository.findAverageHumidity())
-                .averagePressure(weatherRecordRepository.findAveragePressure())
-                .conditionDistribution(getConditionDistribution())
-                .temperatureByCountry(getTemperatureByCountry())
-                .hottestLocations(getHottestLocations(10))
-                .coldestLocations(getColdestLocations(10))
+        return singleFlight.execute("statistics:dashboard", this::computeDashboardStatistics);
+    }
+
+    private DashboardStatistics computeDashboardStatistics() {
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+
+        // Fact-table aggregates come from an in-memory store once one has been built
+        StatisticsAggregateStore.Snapshot aggregates = aggregates();
+
+        SubQuery<Long> totalRecords = aggregateOrQuery(aggregates, StatisticsAggregateStore.Snapshot::totalRecords,
+                "totalRecords", weatherRecordRepository::count, timings);
+        SubQuery<Long> totalLocations = submitQuery("totalLocations", locationRepository::count, timings);
+        SubQuery<Long> totalCountries = submitQuery("totalCountries", locationRepository::countDistinctCountries, timings);
+        SubQuery<Double> averageTemperature = aggregateOrQuery(aggregates, StatisticsAggregateStore.Snapshot::averageTemperature,
+                "averageTemperature", weatherRecordRepository::findAverageTemperature, timings);
+        SubQuery<Double> averageHumidity = aggregateOrQuery(aggregates, StatisticsAggregateStore.Snapshot::averageHumidity,
+                "averageHumidity", weatherRecordRepository::findAverageHumidity, timings);
+        SubQuery<Double> averagePressure = aggregateOrQuery(aggregates, StatisticsAggregateStore.Snapshot::averagePressure,
+                "averagePressure", weatherRecordRepository::findAveragePressure, timings);
+        SubQuery<List<ConditionCount>> conditionDistribution = aggregateOrQuery(aggregates,
+                StatisticsAggregateStore.Snapshot::conditionDistribution,
+                "conditionDistribution", this::queryConditionDistribution, timings);
+        SubQuery<List<CountryTemperature>> temperatureByCountry = aggregateOrQuery(aggregates,
+                snapshot -> limitTemperatureByCountry(snapshot.temperatureByCountry()),
+                "temperatureByCountry", this::queryTemperatureByCountry, timings);
+        SubQuery<List<WeatherRecordDTO>> hottestLocations = submitQuery("hottestLocations", () -> getHottestLocations(10), timings);
+        SubQuery<List<WeatherRecordDTO>> coldestLocations = submitQuery("coldestLocations", () -> getColdestLocations(10), timings);
+
+        List<String> failed = new ArrayList<>();
+
+        DashboardStatistics statistics = DashboardStatistics.builder()
+                .totalRecords(await("totalRecords", totalRecords, failed))
+                .totalLocations(await("totalLocations", totalLocations, failed))
+                .totalCountries(await("totalCountries", totalCountries, failed))
+                .averageTemperature(await("averageTemperature", averageTemperature, failed))
+                .averageHumidity(await("averageHumidity", averageHumidity, failed))
+                .averagePressure(await("averagePressure", averagePressure, failed))
+                .conditionDistribution(await("conditionDistribution", conditionDistribution, failed))
+                .temperatureByCountry(await("temperatureByCountry", temperatureByCountry, failed))
+                .hottestLocations(await("hottestLocations", hottestLocations, failed))
+                .coldestLocations(await("coldestLocations", coldestLocations, failed))
                 .build();
+
+        statistics.setPartial(!failed.isEmpty());
+        statistics.setFailedQueries(failed);
+        statistics.setQueryMillis(new TreeMap<>(timings));
+        return statistics;
+    }
+
+    // Each sub-query gets its own read-only transaction, so lazy associations resolve on the worker thread
+    private <T> SubQuery<T> submitQuery(String name, Supplier<T> query, Map<String, Long> timings) {
+        CompletableFuture<Long> started = new CompletableFuture<>();
+        Future<T> result = dashboardExecutor.submit(() -> {
+            long start = System.nanoTime();
+            started.complete(start);
+            try {
+                return readOnlyTransaction.execute(status -> query.get());
+            } finally {
+                timings.put(name, (System.nanoTime() - start) / 1_000_000);
+            }
+        });
+        return new SubQuery<>(started, result);
+    }
+
+    private <T> SubQuery<T> aggregateOrQuery(StatisticsAggregateStore.Snapshot aggregates,
+                                           Function<StatisticsAggregateStore.Snapshot, T> fromAggregates,
+                                           String name, Supplier<T> query, Map<String, Long> timings) {
+        if (aggregates != null) {
+            return SubQuery.completed(fromAggregates.apply(aggregates));
+        }
+        return submitQuery(name, query, timings);
+    }
+
+    // Waits for a thread first, then gives the query its own timeout from when it started
+    private <T> T await(String name, SubQuery<T> query, List<String> failed) {
+        long started;
+        try {
+            started = query.started().get(dashboardQueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            query.result().cancel(true);
+            log.warn("Dashboard query {} still queued after {} ms", name, dashboardQueueTimeoutMs);
+            failed.add(name);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            query.result().cancel(true);
+            failed.add(name);
+            return null;
+        }
+        try {
+            long deadline = started + TimeUnit.MILLISECONDS.toNanos(dashboardTimeoutMs);
+            return query.result().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            query.result().cancel(true);
+            log.warn("Dashboard query {} timed out after {} ms", name, dashboardTimeoutMs);
+        } catch (ExecutionException e) {
+            log.warn("Dashboard query {} failed", name, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            query.result().cancel(true);
+        }
+        failed.add(name);
+        return null;
+    }
+
+    // The columnar store when enabled, then the running aggregates; null sends callers to MySQL
+    private StatisticsAggregateStore.Snapshot aggregates() {
+        if (columnarStore.isReady()) {
+            return columnarStore.snapshot();
+        }
+        return aggregateStore.isReady() ? aggregateStore.snapshot() : null;
     }
 
     public List<ConditionCount> getConditionDistribution() {
+        StatisticsAggregateStore.Snapshot aggregates = aggregates();
+        if (aggregates != null) {
+            return aggregates.conditionDistribution();
+        }
+        return singleFlight.execute("statistics:conditions", this::queryConditionDistribution);
+    }
+
+    public List<CountryTemperature> getTemperatureByCountry() {
+        StatisticsAggregateStore.Snapshot aggregates = aggregates();
+        if (aggregates != null) {
+            return limitTemperatureByCountry(aggregates.temperatureByCountry());
+        }
+        return singleFlight.execute("statistics:temperature-by-country", this::queryTemperatureByCountry);
+    }
+
+    // Time-filtered variants always query, since the running aggregates cover the whole dataset
+    public List<ConditionCount> getConditionDistribution(TimeWindow window) {
+        return singleFlight.execute("statistics:conditions:" + window, () ->
+                weatherRecordRepository.countByConditionInWindow(window.from(), window.to()).stream()
+                        .map(arr -> new ConditionCount((String) arr[0], (Long) arr[1]))
+                        .collect(Collectors.toList()));
+    }
+
+    public List<CountryTemperature> getTemperatureByCountry(TimeWindow window) {
+        return singleFlight.execute("statistics:temperature-by-country:" + window, () ->
+                limitTemperatureByCountry(weatherRecordRepository.findAverageTemperatureByCountryInWindow(
+                        window.from(), window.to()).stream()
+                        .map(arr -> new CountryTemperature((String) arr[0], (Double) arr[1]))
+                        .collect(Collectors.toList())));
+    }
+
+    private List<ConditionCount> queryConditionDistribution() {
         return weatherRecordRepository.countByCondition().stream()
                 .map(arr -> new ConditionCount((String) arr[0], (Long) arr[1]))
                 .collect(Collectors.toList());
     }
 
-    public List<CountryTemperature> getTemperatureByCountry() {
-        return weatherRecordRepository.findAverageTemperatureByCountry().stream()
-                .limit(20)
+    private List<CountryTemperature> queryTemperatureByCountry() {
+        return limitTemperatureByCountry(weatherRecordRepository.findAverageTemperatureByCountry().stream()
                 .map(arr -> new CountryTemperature((String) arr[0], (Double) arr[1]))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
+    }
+
+    private static List<CountryTemperature> limitTemperatureByCountry(List<CountryTemperature> temperatures) {
+        return temperatures.stream().limit(20).collect(Collectors.toList());
     }
 
     public List<WeatherRecordDTO> getHottestLocations(int limit) {
-        return weatherRecordRepository.findHottestLocations(PageRequest.of(0, limit))
-                .getContent()
-                .stream()
-                .map(WeatherRecordDTO::fromEntity)
-                .collect(Collectors.toList());
+        return getHottestLocations(limit, null);
+    }
+
+    public List<WeatherRecordDTO> getHottestLocations(int limit, UnitSystem units) {
+        return singleFlight.execute("statistics:hottest:" + limit + ":" + units, () ->
+                (columnarStore.isReady() ? columnarStore.hottest(limit)
+                        : weatherRecordRepository.findHottestLocations(PageRequest.of(0, limit)))
+                        .stream()
+                        .map(record -> WeatherRecordDTO.fromEntity(record, units))
+                        .collect(Collectors.toList()));
     }
 
     public List<WeatherRecordDTO> getColdestLocations(int limit) {
-        return weatherRecordRepository.findColdestLocations(PageRequest.of(0, limit))
-                .getContent()
-                .stream()
-                .map(WeatherRecordDTO::fromEntity)
-                .collect(Collectors.toList());
+        return getColdestLocations(limit, null);
+    }
+
+    public List<WeatherRecordDTO> getColdestLocations(int limit, UnitSystem units) {
+        return singleFlight.execute("statistics:coldest:" + limit + ":" + units, () ->
+                (columnarStore.isReady() ? columnarStore.coldest(limit)
+                        : weatherRecordRepository.findColdestLocations(PageRequest.of(0, limit)))
+                        .stream()
+                        .map(record -> WeatherRecordDTO.fromEntity(record, units))
+                        .collect(Collectors.toList()));
+    }
+
+    // One record per location: the location's extreme reading of the metric, or its latest one
+    public List<WeatherRecordDTO> getTopLocations(TopLocationsStore.Metric metric, boolean highest, int k,
+                                                  boolean latest, UnitSystem units) {
+        return singleFlight.execute("statistics:top:" + metric + ":" + highest + ":" + k + ":" + latest + ":" + units, () -> {
+            List<Long> ids = topLocationsStore.isReady()
+                    ? topLocationsStore.top(metric, highest, k, latest)
+                    : topLocationsStore.queryTop(metric, highest, k, latest);
+            return weatherRecordRepository.findByIdInOrder(ids).stream()
+                    .map(record -> WeatherRecordDTO.fromEntity(record, units))
+                    .collect(Collectors.toList());
+        });
+    }
+
+    // All records, or one country's when country is given
+    public DistributionStatistics getDistribution(DistributionStore.Metric metric, String country, int bins) {
+        return singleFlight.execute("statistics:distribution:" + metric + ":" + country + ":" + bins, () -> {
+            Map<String, KllSketch> sketches = distributionStore.sketches(metric, country);
+            KllSketch merged = new KllSketch(distributionStore.sketchK());
+            sketches.values().forEach(merged::merge);
+            return distribution(metric, country, merged, bins);
+        });
+    }
+
+    public List<DistributionStatistics> getDistributionByCountry(DistributionStore.Metric metric, int bins) {
+        return singleFlight.execute("statistics:distribution:countries:" + metric + ":" + bins, () ->
+                distributionStore.sketches(metric, null).entrySet().stream()
+                        .map(entry -> distribution(metric, entry.getKey(), entry.getValue(), bins))
+                        .collect(Collectors.toList()));
+    }
+
+    private static DistributionStatistics distribution(DistributionStore.Metric metric, String country,
+                                                       KllSketch sketch, int bins) {
+        DistributionStatistics.DistributionStatisticsBuilder builder = DistributionStatistics.builder()
+                .metric(metric.name().toLowerCase(Locale.ROOT))
+                .country(country)
+                .count(sketch.count())
+                .rankError(KllSketch.rankError(sketch.k()))
+                .histogramError(KllSketch.histogramError(sketch.k()));
+        if (sketch.isEmpty()) {
+            return builder.histogram(List.of()).build();
+        }
+
+        double[] quantiles = sketch.quantiles(0.05, 0.25, 0.5, 0.75, 0.95);
+        long[] counts = sketch.histogram(bins);
+        double width = (sketch.max() - sketch.min()) / bins;
+        List<HistogramBin> histogram = new ArrayList<>(bins);
+        for (int bin = 0; bin < bins; bin++) {
+            double to = bin == bins - 1 ? sketch.max() : sketch.min() + (bin + 1) * width;
+            histogram.add(new HistogramBin(sketch.min() + bin * width, to, counts[bin]));
+        }
+        return builder
+                .min(sketch.min())
+                .p5(quantiles[0])
+                .p25(quantiles[1])
+                .median(quantiles[2])
+                .p75(quantiles[3])
+                .p95(quantiles[4])
+                .max(sketch.max())
+                .histogram(histogram)
+                .build();
+    }
+
+    public List<DaylightStatistics> getDaylightByCountry() {
+        return singleFlight.execute("statistics:daylight:country", () ->
+                weatherRecordRepository.sumDayLengthByCountry().stream()
+                        .map(arr -> daylight(DaylightStatistics.builder().country((String) arr[0]),
+                                ((Number) arr[1]).longValue(), (Long) arr[2]))
+                        .collect(Collectors.toList()));
+    }
+
+    // Sums per whole degree from the database, merged into bands here so any band width shares one query
+    public List<DaylightStatistics> getDaylightByLatitude(int bandDegrees) {
+        return singleFlight.execute("statistics:daylight:latitude:" + bandDegrees, () -> {
+            Map<Integer, long[]> bands = new TreeMap<>();
+            for (Object[] row : weatherRecordRepository.sumDayLengthByLatitudeDegree()) {
+                int degree = Math.min(((Number) row[0]).intValue(), 89);
+                long[] sums = bands.computeIfAbsent(Math.floorDiv(degree, bandDegrees) * bandDegrees, key -> new long[2]);
+                sums[0] += ((Number) row[1]).longValue();
+                sums[1] += (Long) row[2];
+            }
+            List<DaylightStatistics> statistics = new ArrayList<>(bands.size());
+            bands.forEach((from, sums) -> statistics.add(daylight(DaylightStatistics.builder()
+                    .latitudeFrom(from)
+                    .latitudeTo(Math.min(from + bandDegrees, 90)), sums[0], sums[1])));
+            return statistics;
+        });
+    }
+
+    private static DaylightStatistics daylight(DaylightStatistics.DaylightStatisticsBuilder builder,
+                                               long minutes, long count) {
+        double averageMinutes = (double) minutes / count;
+        return builder
+                .recordCount(count)
+                .averageDayLengthMinutes(averageMinutes)
+                .averageDaylightHours(averageMinutes / 60)
+                .build();
     }
 
     public List<CountryStatistics> getCountryStatistics() {
-        return weatherRecordRepository.findCountryStatistics().stream()
-                .map(arr -> CountryStatistics.builder()
-                        .country((String) arr[0])
-                        .recordCount((Long) arr[1])
-                        .locationCount((Long) arr[2])
-                        .averageTemperature((Double) arr[3])
-                        .averageHumidity((Double) arr[4])
-                        .latitude((Double) arr[5])
-                        .longitude((Double) arr[6])
-                        .build())
-                .collect(Collectors.toList());
+        StatisticsAggregateStore.Snapshot aggregates = aggregates();
+        if (aggregates != null) {
+            return aggregates.countryStatistics();
+        }
+        return singleFlight.execute("statistics:countries", () ->
+                weatherRecordRepository.findCountryStatistics().stream()
+                        .map(arr -> CountryStatistics.builder()
+                                .country((String) arr[0])
+                                .recordCount((Long) arr[1])
+                                .locationCount((Long) arr[2])
+                                .averageTemperature((Double) arr[3])
+                                .averageHumidity((Double) arr[4])
+                                .latitude((Double) arr[5])
+                                .longitude((Double) arr[6])
+                                .build())
+                        .collect(Collectors.toList()));
     }
 }
@@ -0,0 +1,29 @@
+package raf.shell.weatherapp.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Half-open [from, to) range of last_updated for the time-window endpoints. A missing end is
+ * replaced with the DATETIME limit, so the queries always bind both bounds and MySQL prunes
+ * partitions on whichever of them was given.
+ */
+public record TimeWindow(LocalDateTime from, LocalDateTime to) {
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    // Null without either bound, i.e. no time filter
+    public static TimeWindow of(LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) return null;
+        TimeWindow window = new TimeWindow(from != null ? from : EARLIEST, to != null ? to : LATEST);
+        if (!window.from().isBefore(window.to())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        return window;
+    }
+
+    @Override
+    public String toString() {
+        return from + "/" + to;
+    }
+}
@@ -0,0 +1,225 @@
+package raf.shell.weatherapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The highest and lowest reading of each metric per location, plus each location's latest
+ * record, maintained from ingest events. A top-K query ranks the locations with a bounded heap,
+ * so every location appears at most once and no query sorts weather_records. Ties go to the
+ * lower record id; readings without a value are never ranked.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TopLocationsStore {
+
+    public enum Metric {
+        TEMPERATURE("temperature_celsius", WeatherRecord::getTemperatureCelsius),
+        UV("uv_index", WeatherRecord::getUvIndex),
+        WIND("wind_kph", WeatherRecord::getWindKph),
+        PM25("pm25", record -> record.getAirQuality() != null ? record.getAirQuality().getPm25() : null),
+        PRECIPITATION("precip_mm", WeatherRecord::getPrecipMm);
+
+        private final String column;
+        private final Function<WeatherRecord, Double> value;
+
+        Metric(String column, Function<WeatherRecord, Double> value) {
+            this.column = column;
+            this.value = value;
+        }
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private static final String SCAN = "SELECT id, location_id, last_updated_epoch, " +
+            Arrays.stream(METRICS).map(metric -> metric.column).collect(Collectors.joining(", ")) +
+            " FROM weather_records";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${statistics.top.enabled:true}")
+    private boolean enabled;
+
+    // Per metric the best value and its record id; NaN value while there is none
+    private static class LocationTop {
+        private final double[] highest = filled(Double.NaN);
+        private final long[] highestIds = new long[METRICS.length];
+        private final double[] lowest = filled(Double.NaN);
+        private final long[] lowestIds = new long[METRICS.length];
+        private final double[] latest = filled(Double.NaN);
+        private long latestId = -1;
+        private long latestEpoch = Long.MIN_VALUE;
+
+        private void add(long id, Long epoch, double[] values) {
+            for (int metric = 0; metric < METRICS.length; metric++) {
+                double value = values[metric];
+                if (Double.isNaN(value)) continue;
+                if (Double.isNaN(highest[metric]) || value > highest[metric]
+                        || (value == highest[metric] && id < highestIds[metric])) {
+                    highest[metric] = value;
+                    highestIds[metric] = id;
+                }
+                if (Double.isNaN(lowest[metric]) || value < lowest[metric]
+                        || (value == lowest[metric] && id < lowestIds[metric])) {
+                    lowest[metric] = value;
+                    lowestIds[metric] = id;
+                }
+            }
+            // Latest by epoch then id, records without an epoch count as oldest
+            long recordEpoch = epoch != null ? epoch : Long.MIN_VALUE;
+            if (recordEpoch > latestEpoch || (recordEpoch == latestEpoch && id > latestId)) {
+                latestEpoch = recordEpoch;
+                latestId = id;
+                System.arraycopy(values, 0, latest, 0, values.length);
+            }
+        }
+
+        private static double[] filled(double value) {
+            double[] values = new double[METRICS.length];
+            Arrays.fill(values, value);
+            return values;
+        }
+    }
+
+    private record Candidate(double value, long id) {
+    }
+
+    private final Map<Long, LocationTop> locations = new HashMap<>();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener
+    @Order(0)
+    public void onReset(WeatherDataResetEvent event) {
+        if (!enabled) return;
+        ready = false;
+        long start = System.nanoTime();
+
+        Map<Long, LocationTop> loaded = new HashMap<>();
+        double[] values = new double[METRICS.length];
+        // Streamed, so the scan holds one row of the result set at a time
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            for (int metric = 0; metric < METRICS.length; metric++) {
+                double value = rs.getDouble(4 + metric);
+                values[metric] = rs.wasNull() ? Double.NaN : value;
+            }
+            long epoch = rs.getLong(3);
+            loaded.computeIfAbsent(rs.getLong(2), key -> new LocationTop())
+                    .add(rs.getLong(1), rs.wasNull() ? null : epoch, values);
+        });
+
+        synchronized (this) {
+            locations.clear();
+            locations.putAll(loaded);
+        }
+        ready = true;
+        log.info("Rebuilt top-K extremes for {} locations in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @EventListener
+    @Order(0)
+    public synchronized void onRecordsAdded(WeatherRecordsAddedEvent event) {
+        if (!ready) return;
+        double[] values = new double[METRICS.length];
+        for (WeatherRecord record : event.records()) {
+            for (int metric = 0; metric < METRICS.length; metric++) {
+                Double value = METRICS[metric].value.apply(record);
+                values[metric] = value != null ? value : Double.NaN;
+            }
+            locations.computeIfAbsent(record.getLocation().getId(), key -> new LocationTop())
+                    .add(record.getId(), record.getLastUpdatedEpoch(), values);
+        }
+    }
+
+    /**
+     * Record ids of the {@code k} locations ranking highest (or lowest) on the metric, best first.
+     * With {@code latest} each location is ranked by its latest record rather than its extreme one.
+     */
+    public synchronized List<Long> top(Metric metric, boolean highest, int k, boolean latest) {
+        int index = metric.ordinal();
+        double sign = highest ? 1 : -1;
+        // Worst candidate on top, so it is the one evicted
+        Comparator<Candidate> ranking = Comparator.comparingDouble((Candidate candidate) -> sign * candidate.value())
+                .thenComparing(Candidate::id, Comparator.reverseOrder());
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(k + 1, ranking);
+
+        for (LocationTop location : locations.values()) {
+            double value;
+            long id;
+            if (latest) {
+                value = location.latest[index];
+                id = location.latestId;
+            } else {
+                value = highest ? location.highest[index] : location.lowest[index];
+                id = highest ? location.highestIds[index] : location.lowestIds[index];
+            }
+            if (Double.isNaN(value)) continue;
+
+            Candidate candidate = new Candidate(value, id);
+            if (heap.size() < k) {
+                heap.add(candidate);
+            } else if (ranking.compare(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        List<Candidate> ranked = new ArrayList<>(heap);
+        ranked.sort(ranking.reversed());
+        return ranked.stream().map(Candidate::id).collect(Collectors.toList());
+    }
+
+    // Latest record id of each of the locations that has records, in the order given
+    public synchronized List<Long> latestRecordIds(List<Long> locationIds) {
+        List<Long> ids = new ArrayList<>(locationIds.size());
+        for (Long locationId : locationIds) {
+            LocationTop location = locations.get(locationId);
+            if (location != null) {
+                ids.add(location.latestId);
+            }
+        }
+        return ids;
+    }
+
+    // The same ranking in SQL, for when the store has not been built
+    public List<Long> queryTop(Metric metric, boolean highest, int k, boolean latest) {
+        String direction = highest ? "DESC" : "ASC";
+        String perLocation = latest
+                ? "last_updated_epoch DESC, id DESC"
+                : metric.column + " " + direction + ", id";
+        String sql = "SELECT id FROM (SELECT id, " + metric.column + " AS value, " +
+                "ROW_NUMBER() OVER (PARTITION BY location_id ORDER BY " + perLocation + ") AS position " +
+                "FROM weather_records" + (latest ? "" : " WHERE " + metric.column + " IS NOT NULL") + ") ranked " +
+                "WHERE position = 1 AND value IS NOT NULL ORDER BY value " + direction + ", id LIMIT ?";
+        return jdbcTemplate.queryForList(sql, Long.class, k);
+    }
+}
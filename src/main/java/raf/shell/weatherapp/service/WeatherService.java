@@ -1,20 +1,46 @@
 package raf.shell.weatherapp.service;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import raf.shell.weatherapp.dictionary.DictionaryKind;
+import raf.shell.weatherapp.dictionary.StringDictionary;
+import raf.shell.weatherapp.dto.CursorPage;
 import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.ingest.WeatherCsvRowMapper;
 import raf.shell.weatherapp.repository.WeatherRecordRepository;
 
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class WeatherService {
 
     private final WeatherRecordRepository weatherRecordRepository;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final StringDictionary stringDictionary;
+    private final TopLocationsStore topLocationsStore;
+    private final SpatialIndexStore spatialIndexStore;
+
+    // Rows kept in the persistence context between clears while streaming
+    @Value("${weather.stream.clear-interval:1000}")
+    private int streamClearInterval;
 
     public List<WeatherRecord> getAllRecords() {
         return weatherRecordRepository.findAll();
@@ -24,16 +50,64 @@ public class WeatherService {
         return weatherRecordRepository.findAll(PageRequest.of(page, size));
     }
 
+    public Slice<WeatherRecord> getRecordsSlice(int page, int size) {
+        return weatherRecordRepository.findAllBy(PageRequest.of(page, size));
+    }
+
+    // Newest first within the window; only the partitions of the months it spans are read
+    public Page<WeatherRecord> getRecordsInWindow(TimeWindow window, int page, int size) {
+        return weatherRecordRepository.findInWindow(window.from(), window.to(), PageRequest.of(page, size));
+    }
+
+    public Slice<WeatherRecord> getRecordsSliceInWindow(TimeWindow window, int page, int size) {
+        return weatherRecordRepository.findSliceInWindow(window.from(), window.to(), PageRequest.of(page, size));
+    }
+
+    /**
+     * Newest records first, continuing after {@code cursor} (null for the first page). Every page
+     * is an index range scan from the cursor, so deep pages cost the same as the first one.
+     */
+    public CursorPage<WeatherRecord> getRecordsAfter(String cursor, int size) {
+        // One extra row tells whether another page follows
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<WeatherRecord> records;
+        if (cursor == null) {
+            records = weatherRecordRepository.findNewest(limit);
+        } else {
+            List<String> key = KeysetCursor.decode(cursor, 2);
+            Long id = parseKey(key.get(1));
+            records = key.get(0) == null
+                    ? weatherRecordRepository.findWithoutEpochAfter(id, limit)
+                    : weatherRecordRepository.findNewestAfter(parseKey(key.get(0)), id, limit);
+        }
+
+        boolean hasNext = records.size() > size;
+        List<WeatherRecord> content = hasNext ? records.subList(0, size) : records;
+        String nextCursor = null;
+        if (hasNext) {
+            WeatherRecord last = content.get(content.size() - 1);
+            nextCursor = KeysetCursor.encode(
+                    last.getLastUpdatedEpoch() != null ? last.getLastUpdatedEpoch().toString() : null,
+                    last.getId().toString());
+        }
+        return new CursorPage<>(content, content.size(), nextCursor, hasNext);
+    }
+
     public Optional<WeatherRecord> getRecordById(Long id) {
-        return weatherRecordRepository.findById(id);
+        return weatherRecordRepository.findDetailedById(id);
     }
 
     public List<WeatherRecord> getRecordsByCountry(String country) {
         return weatherRecordRepository.findByCountry(country);
     }
 
+    // Conditions are stored normalized; one the dictionary has never seen cannot match any row
     public List<WeatherRecord> getRecordsByCondition(String condition) {
-        return weatherRecordRepository.findByConditionText(condition);
+        String normalized = WeatherCsvRowMapper.normalizeCondition(condition);
+        if (!stringDictionary.contains(DictionaryKind.CONDITION, normalized)) {
+            return List.of();
+        }
+        return weatherRecordRepository.findByConditionText(normalized);
     }
 
     public List<WeatherRecord> getRecordsByTemperatureRange(Double min, Double max) {
@@ -44,7 +118,79 @@ public class WeatherService {
         return weatherRecordRepository.findByLocationId(locationId);
     }
 
+    public long streamRecordsByCountry(String country, Consumer<WeatherRecord> sink) {
+        return stream(() -> weatherRecordRepository.streamByCountry(country), sink);
+    }
+
+    public long streamRecordsByCondition(String condition, Consumer<WeatherRecord> sink) {
+        String normalized = WeatherCsvRowMapper.normalizeCondition(condition);
+        if (!stringDictionary.contains(DictionaryKind.CONDITION, normalized)) {
+            return 0;
+        }
+        return stream(() -> weatherRecordRepository.streamByConditionText(normalized), sink);
+    }
+
+    public long streamRecordsByTemperatureRange(Double min, Double max, Consumer<WeatherRecord> sink) {
+        return stream(() -> weatherRecordRepository.streamByTemperatureRange(min, max), sink);
+    }
+
+    public long streamRecordsByLocationId(Long locationId, Consumer<WeatherRecord> sink) {
+        return stream(() -> weatherRecordRepository.streamByLocationId(locationId), sink);
+    }
+
+    // Latest record of each location that has records, in the order of the given locations
+    public List<WeatherRecord> getLatestRecords(List<Long> locationIds) {
+        if (locationIds.isEmpty()) return List.of();
+        if (topLocationsStore.isReady()) {
+            return weatherRecordRepository.findByIdInOrder(topLocationsStore.latestRecordIds(locationIds));
+        }
+        Map<Long, WeatherRecord> latest = new HashMap<>();
+        for (WeatherRecord record : weatherRecordRepository.findLatestByLocationIds(locationIds)) {
+            latest.merge(record.getLocation().getId(), record, (a, b) -> a.getId() > b.getId() ? a : b);
+        }
+        return locationIds.stream()
+                .map(latest::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Latest conditions for a map viewport; a box with minLon > maxLon crosses the antimeridian
+    public List<WeatherRecord> getLatestInBox(double minLat, double maxLat, double minLon, double maxLon, int limit) {
+        return getLatestRecords(spatialIndexStore.within(minLat, maxLat, minLon, maxLon, limit));
+    }
+
     public long getTotalRecordsCount() {
         return weatherRecordRepository.count();
     }
+
+    private static Long parseKey(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Hands the rows of a streaming query to {@code sink} one at a time inside a read-only
+     * transaction. The persistence context is cleared periodically, so heap use does not grow
+     * with the size of the result.
+     */
+    private long stream(Supplier<Stream<WeatherRecord>> query, Consumer<WeatherRecord> sink) {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        return readOnlyTransaction.execute(status -> {
+            long rows = 0;
+            try (Stream<WeatherRecord> records = query.get()) {
+                Iterator<WeatherRecord> iterator = records.iterator();
+                while (iterator.hasNext()) {
+                    sink.accept(iterator.next());
+                    if (++rows % streamClearInterval == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+            return rows;
+        });
+    }
 }
@@ -0,0 +1,255 @@
+package raf.shell.weatherapp.sketch;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KLL quantile sketch (Karnin, Lang, Liberty) over doubles. Values go into level 0; a level that
+ * reaches its capacity is sorted and every other value, starting at a random offset, moves up one
+ * level with twice the weight. Capacities shrink by 2/3 per level below the top, so the sketch
+ * keeps about 3k values whatever the stream length, and two sketches merge by concatenating
+ * levels and compacting again.
+ * <p>
+ * With parameter k the normalized rank error is about 2.296 / k^0.9723 for a single quantile and
+ * 2.446 / k^0.9433 for each bin of a histogram, with 99% confidence: 1.3% and 1.7% at k = 200.
+ * Min, max and count are exact. Not thread-safe.
+ */
+public final class KllSketch {
+
+    private static final double SHRINK = 2.0 / 3.0;
+    private static final int MIN_K = 8;
+
+    private final int k;
+    private double[][] levels = new double[0][];
+    private int[] sizes = new int[0];
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public KllSketch(int k) {
+        if (k < MIN_K) {
+            throw new IllegalArgumentException("k must be at least " + MIN_K);
+        }
+        this.k = k;
+        grow();
+    }
+
+    // Largest k whose sketch stays within about the given bytes of retained values
+    public static int kForBudget(long bytes) {
+        return (int) Math.max(MIN_K, Math.min(Integer.MAX_VALUE / 4, (bytes / Double.BYTES - 64) / 3));
+    }
+
+    public static double rankError(int k) {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    public static double histogramError(int k) {
+        return 2.446 / Math.pow(k, 0.9433);
+    }
+
+    public int k() {
+        return k;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    public int retained() {
+        return retained;
+    }
+
+    public void update(double value) {
+        if (Double.isNaN(value)) return;
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        retained++;
+        if (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    public void merge(KllSketch other) {
+        if (other.count == 0) return;
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        retained += other.retained;
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    public KllSketch copy() {
+        KllSketch copy = new KllSketch(k);
+        copy.levels = new double[levels.length][];
+        for (int level = 0; level < levels.length; level++) {
+            copy.levels[level] = Arrays.copyOf(levels[level], sizes[level]);
+        }
+        copy.sizes = sizes.clone();
+        copy.retained = retained;
+        copy.maxRetained = maxRetained;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    /**
+     * The value at normalized rank {@code rank} (0 for the minimum, 1 for the maximum), or NaN
+     * for an empty sketch.
+     */
+    public double quantile(double rank) {
+        if (rank < 0 || rank > 1) {
+            throw new IllegalArgumentException("rank must be between 0 and 1");
+        }
+        if (count == 0) return Double.NaN;
+        if (rank == 0) return min;
+        if (rank == 1) return max;
+
+        SortedView view = sortedView();
+        double target = rank * count;
+        long cumulative = 0;
+        for (int i = 0; i < view.values.length; i++) {
+            cumulative += view.weights[i];
+            if (cumulative >= target) {
+                return view.values[i];
+            }
+        }
+        return max;
+    }
+
+    public double[] quantiles(double... ranks) {
+        double[] values = new double[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            values[i] = quantile(ranks[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Estimated counts of values in {@code bins} equal-width bins from min to max; the last bin
+     * includes the maximum.
+     */
+    public long[] histogram(int bins) {
+        long[] counts = new long[bins];
+        if (count == 0) return counts;
+        double width = (max - min) / bins;
+        for (int level = 0; level < levels.length; level++) {
+            long weight = 1L << level;
+            for (int i = 0; i < sizes[level]; i++) {
+                int bin = width > 0 ? (int) ((levels[level][i] - min) / width) : 0;
+                counts[Math.min(bin, bins - 1)] += weight;
+            }
+        }
+        return counts;
+    }
+
+    private record SortedView(double[] values, long[] weights) {
+    }
+
+    private SortedView sortedView() {
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                values[n] = levels[level][i];
+                weights[n++] = 1L << level;
+            }
+        }
+        // Sort indexes by value, then lay both arrays out in that order
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[n];
+        long[] sortedWeights = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        return new SortedView(sortedValues, sortedWeights);
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - level - 1;
+        return (int) Math.ceil(Math.pow(SHRINK, depth) * k) + 1;
+    }
+
+    private void grow() {
+        int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        sizes = Arrays.copyOf(sizes, height);
+        levels[height - 1] = new double[0];
+        maxRetained = 0;
+        for (int level = 0; level < height; level++) {
+            maxRetained += capacity(level);
+        }
+    }
+
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(8, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    // Compacts the lowest full level; lazily, so one compaction per call is usually enough
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] < capacity(level)) continue;
+            if (level + 1 >= levels.length) {
+                grow();
+            }
+
+            double[] values = levels[level];
+            int size = sizes[level];
+            Arrays.sort(values, 0, size);
+            // An odd value out stays behind at this level, so total weight equals count
+            int pairs = size / 2;
+            int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+            for (int pair = 0; pair < pairs; pair++) {
+                append(level + 1, values[2 * pair + offset]);
+            }
+            if (size % 2 == 1) {
+                values[0] = values[size - 1];
+                sizes[level] = 1;
+            } else {
+                sizes[level] = 0;
+            }
+            retained -= pairs;
+            if (retained < maxRetained) return;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package raf.shell.weatherapp.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * k-d tree over locations placed on the unit sphere as (x, y, z) points. Straight-line distance
+ * between those points grows with great-circle distance, so nearest-neighbour search needs no
+ * special cases at the poles or the antimeridian. A latitude/longitude box is searched through
+ * the 3D box that encloses it and the hits are then checked against the box itself.
+ * <p>
+ * The tree is rebuilt balanced whenever the points added since the last build reach a quarter
+ * of it, so both queries stay logarithmic plus output. Not thread-safe.
+ */
+public final class SpatialIndex {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final int MIN_REBUILD = 64;
+
+    public record Neighbour(long id, double distanceKm) {
+    }
+
+    private static final class Node {
+        private final long id;
+        private final double latitude;
+        private final double longitude;
+        private final double[] point;
+        private int axis;
+        private Node left;
+        private Node right;
+
+        private Node(long id, double latitude, double longitude) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.point = toPoint(latitude, longitude);
+        }
+    }
+
+    private record Candidate(Node node, double squaredChord) {
+    }
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Set<Long> ids = new HashSet<>();
+    private Node root;
+    private int builtSize;
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Known ids are left in place
+    public void add(long id, double latitude, double longitude) {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude) || !ids.add(id)) return;
+        Node node = new Node(id, latitude, longitude);
+        nodes.add(node);
+        if (nodes.size() - builtSize >= Math.max(MIN_REBUILD, builtSize / 4)) {
+            rebuild();
+        } else {
+            insert(node);
+        }
+    }
+
+    /**
+     * The {@code k} points nearest to the given position, nearest first, with great-circle
+     * distances in kilometres.
+     */
+    public List<Neighbour> nearest(double latitude, double longitude, int k) {
+        if (k <= 0 || root == null) return List.of();
+        double[] target = toPoint(latitude, longitude);
+        // Farthest candidate on top, so it is the one replaced
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(k + 1,
+                Comparator.comparingDouble(Candidate::squaredChord).reversed());
+        nearest(root, target, k, heap);
+
+        List<Candidate> found = new ArrayList<>(heap);
+        found.sort(Comparator.comparingDouble(Candidate::squaredChord).thenComparingLong(candidate -> candidate.node().id));
+        List<Neighbour> neighbours = new ArrayList<>(found.size());
+        for (Candidate candidate : found) {
+            double angle = 2 * Math.asin(Math.min(1, Math.sqrt(candidate.squaredChord()) / 2));
+            neighbours.add(new Neighbour(candidate.node().id, angle * EARTH_RADIUS_KM));
+        }
+        return neighbours;
+    }
+
+    /**
+     * Ids of up to {@code limit} points inside the box, edges included. A box whose minimum
+     * longitude is greater than its maximum wraps across the antimeridian.
+     */
+    public List<Long> within(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude, int limit) {
+        List<Long> found = new ArrayList<>();
+        minLatitude = Math.max(minLatitude, -90);
+        maxLatitude = Math.min(maxLatitude, 90);
+        if (root == null || limit <= 0 || minLatitude > maxLatitude) return found;
+        double[][] bounds = enclosingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        within(root, bounds[0], bounds[1], minLatitude, maxLatitude, minLongitude, maxLongitude, limit, found);
+        return found;
+    }
+
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.pow(Math.sin(dLatitude / 2), 2) + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * Math.pow(Math.sin(dLongitude / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private void nearest(Node node, double[] target, int k, PriorityQueue<Candidate> heap) {
+        if (node == null) return;
+        double squaredChord = squaredDistance(node.point, target);
+        if (heap.size() < k) {
+            heap.add(new Candidate(node, squaredChord));
+        } else if (squaredChord < heap.peek().squaredChord()) {
+            heap.poll();
+            heap.add(new Candidate(node, squaredChord));
+        }
+
+        double difference = target[node.axis] - node.point[node.axis];
+        nearest(difference < 0 ? node.left : node.right, target, k, heap);
+        // The far side can only hold closer points if the splitting plane is closer than the worst candidate
+        if (heap.size() < k || difference * difference < heap.peek().squaredChord()) {
+            nearest(difference < 0 ? node.right : node.left, target, k, heap);
+        }
+    }
+
+    private void within(Node node, double[] low, double[] high, double minLatitude, double maxLatitude,
+                        double minLongitude, double maxLongitude, int limit, List<Long> found) {
+        if (node == null || found.size() >= limit) return;
+        if (inside(node.point, low, high) && node.latitude >= minLatitude && node.latitude <= maxLatitude
+                && longitudeWithin(node.longitude, minLongitude, maxLongitude)) {
+            found.add(node.id);
+        }
+        if (low[node.axis] < node.point[node.axis]) {
+            within(node.left, low, high, minLatitude, maxLatitude, minLongitude, maxLongitude, limit, found);
+        }
+        if (high[node.axis] >= node.point[node.axis]) {
+            within(node.right, low, high, minLatitude, maxLatitude, minLongitude, maxLongitude, limit, found);
+        }
+    }
+
+    private void rebuild() {
+        Node[] all = nodes.toArray(new Node[0]);
+        root = build(all, 0, all.length, 0);
+        builtSize = all.length;
+    }
+
+    // Splits on the median of the range; smaller coordinates go left, equal and greater right
+    private static Node build(Node[] all, int from, int to, int depth) {
+        if (from >= to) return null;
+        int axis = depth % 3;
+        Arrays.sort(all, from, to, Comparator.comparingDouble(node -> node.point[axis]));
+        int middle = (from + to) >>> 1;
+        while (middle > from && all[middle - 1].point[axis] == all[middle].point[axis]) {
+            middle--;
+        }
+        Node node = all[middle];
+        node.axis = axis;
+        node.left = build(all, from, middle, depth + 1);
+        node.right = build(all, middle + 1, to, depth + 1);
+        return node;
+    }
+
+    private void insert(Node node) {
+        if (root == null) {
+            node.axis = 0;
+            root = node;
+            return;
+        }
+        Node parent = root;
+        while (true) {
+            boolean left = node.point[parent.axis] < parent.point[parent.axis];
+            Node child = left ? parent.left : parent.right;
+            if (child == null) {
+                node.axis = (parent.axis + 1) % 3;
+                if (left) {
+                    parent.left = node;
+                } else {
+                    parent.right = node;
+                }
+                return;
+            }
+            parent = child;
+        }
+    }
+
+    private static double[] toPoint(double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        return new double[]{Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    private static double squaredDistance(double[] a, double[] b) {
+        double dx = a[0] - b[0];
+        double dy = a[1] - b[1];
+        double dz = a[2] - b[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static boolean inside(double[] point, double[] low, double[] high) {
+        for (int axis = 0; axis < 3; axis++) {
+            if (point[axis] < low[axis] || point[axis] > high[axis]) return false;
+        }
+        return true;
+    }
+
+    private static boolean longitudeWithin(double longitude, double minLongitude, double maxLongitude) {
+        return minLongitude <= maxLongitude
+                ? longitude >= minLongitude && longitude <= maxLongitude
+                : longitude >= minLongitude || longitude <= maxLongitude;
+    }
+
+    // Axis-aligned (x, y, z) bounds of the sphere patch covered by the latitude/longitude box
+    private static double[][] enclosingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        double from = minLongitude;
+        double to = maxLongitude >= minLongitude ? maxLongitude : maxLongitude + 360;
+
+        double cosMin = Math.cos(Math.toRadians(minLatitude));
+        double cosMax = Math.cos(Math.toRadians(maxLatitude));
+        double radiusHigh = minLatitude <= 0 && maxLatitude >= 0 ? 1 : Math.max(cosMin, cosMax);
+        double radiusLow = Math.min(cosMin, cosMax);
+
+        double cosFrom = Math.cos(Math.toRadians(from));
+        double cosTo = Math.cos(Math.toRadians(to));
+        double sinFrom = Math.sin(Math.toRadians(from));
+        double sinTo = Math.sin(Math.toRadians(to));
+        double cosHigh = spans(from, to, 0) ? 1 : Math.max(cosFrom, cosTo);
+        double cosLow = spans(from, to, 180) ? -1 : Math.min(cosFrom, cosTo);
+        double sinHigh = spans(from, to, 90) ? 1 : Math.max(sinFrom, sinTo);
+        double sinLow = spans(from, to, 270) ? -1 : Math.min(sinFrom, sinTo);
+
+        // Rounding slack; the latitude/longitude check decides the edges
+        double slack = 1e-9;
+        double[] low = {
+                (cosLow >= 0 ? radiusLow * cosLow : radiusHigh * cosLow) - slack,
+                (sinLow >= 0 ? radiusLow * sinLow : radiusHigh * sinLow) - slack,
+                Math.sin(Math.toRadians(minLatitude)) - slack
+        };
+        double[] high = {
+                (cosHigh >= 0 ? radiusHigh * cosHigh : radiusLow * cosHigh) + slack,
+                (sinHigh >= 0 ? radiusHigh * sinHigh : radiusLow * sinHigh) + slack,
+                Math.sin(Math.toRadians(maxLatitude)) + slack
+        };
+        return new double[][]{low, high};
+    }
+
+    // Whether the angle range [from, to] in degrees includes the given angle modulo 360
+    private static boolean spans(double from, double to, double angle) {
+        return angle + 360 * Math.ceil((from - angle) / 360) <= to;
+    }
+}
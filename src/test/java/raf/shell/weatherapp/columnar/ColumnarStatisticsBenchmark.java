@@ -0,0 +1,113 @@
+package raf.shell.weatherapp.columnar;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The statistics aggregates as MySQL GROUP BY queries against the same aggregates as scans of a
+ * {@link ColumnarTable}, at 1x, 10x and 100x the loaded weather_records. Each scale copies the rows
+ * into a scratch table (and the column arrays) that many times. Not a test; run the main method with
+ * the JDBC url, user and password of a database that has data loaded.
+ */
+public class ColumnarStatisticsBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int[] SCALES = {1, 10, 100};
+    private static final String TABLE = "weather_records_columnar_benchmark";
+
+    private static final String[] QUERIES = {
+            "SELECT COUNT(*), AVG(temperature_celsius), AVG(humidity), AVG(pressure_mb) FROM " + TABLE,
+            "SELECT condition_code, COUNT(*) FROM " + TABLE + " GROUP BY condition_code",
+            "SELECT l.country, COUNT(*), COUNT(DISTINCT w.location_id), AVG(w.temperature_celsius), AVG(w.humidity), " +
+                    "AVG(l.latitude), AVG(l.longitude) FROM " + TABLE + " w JOIN locations l ON l.id = w.location_id GROUP BY l.country",
+            "SELECT id FROM " + TABLE + " ORDER BY temperature_celsius DESC LIMIT 10"
+    };
+
+    private record Row(long id, long locationId, int condition, Double temperature, Integer humidity, Double pressure) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "jdbc:mysql://localhost:3306/weatherapp";
+        String user = args.length > 1 ? args[1] : "root";
+        String password = args.length > 2 ? args[2] : "";
+
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Statement statement = connection.createStatement()) {
+            List<Object[]> locations = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT id, country, latitude, longitude FROM locations")) {
+                while (rs.next()) {
+                    locations.add(new Object[]{rs.getLong(1), rs.getString(2), rs.getObject(3, Double.class), rs.getObject(4, Double.class)});
+                }
+            }
+            List<Row> rows = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT id, location_id, condition_code, temperature_celsius, " +
+                    "humidity, pressure_mb FROM weather_records")) {
+                while (rs.next()) {
+                    rows.add(new Row(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getObject(4, Double.class),
+                            rs.getObject(5, Integer.class), rs.getObject(6, Double.class)));
+                }
+            }
+
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " (id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                    "location_id BIGINT, condition_code INT, temperature_celsius DOUBLE, humidity INT, pressure_mb DOUBLE)");
+            try {
+                int copies = 0;
+                for (int scale : SCALES) {
+                    for (; copies < scale; copies++) {
+                        statement.execute("INSERT INTO " + TABLE + " (location_id, condition_code, temperature_celsius, humidity, pressure_mb) " +
+                                "SELECT location_id, condition_code, temperature_celsius, humidity, pressure_mb FROM weather_records");
+                    }
+                    statement.execute("ANALYZE TABLE " + TABLE);
+
+                    ColumnarTable table = new ColumnarTable();
+                    for (Object[] location : locations) {
+                        table.addLocation((Long) location[0], (String) location[1], (Double) location[2], (Double) location[3]);
+                    }
+                    long id = 0;
+                    for (int copy = 0; copy < scale; copy++) {
+                        for (Row row : rows) {
+                            table.append(++id, row.locationId(), row.condition(), row.temperature(), row.humidity(), row.pressure());
+                        }
+                    }
+                    table.publish();
+
+                    for (int round = 1; round <= ROUNDS; round++) {
+                        measure("mysql", scale, round, table.size(), () -> {
+                            for (String query : QUERIES) {
+                                try (ResultSet rs = statement.executeQuery(query)) {
+                                    while (rs.next()) {
+                                        rs.getObject(1);
+                                    }
+                                }
+                            }
+                        });
+                        measure("columnar", scale, round, table.size(), () -> {
+                            table.summarize();
+                            table.topByTemperature(10, true);
+                        });
+                    }
+                }
+            } finally {
+                statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            }
+        }
+    }
+
+    private interface Run {
+        void run() throws SQLException;
+    }
+
+    private static void measure(String name, int scale, int round, int rows, Run run) throws SQLException {
+        long start = System.nanoTime();
+        run.run();
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-8s %3dx round %d: %,d rows in %,.1f ms, %,.0f rows/s%n",
+                name, scale, round, rows, nanos / 1e6, rows * 1e9 / nanos);
+    }
+}
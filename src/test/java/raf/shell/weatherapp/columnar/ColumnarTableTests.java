@@ -0,0 +1,97 @@
+package raf.shell.weatherapp.columnar;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnarTableTests {
+
+    @Test
+    void summaryMatchesSqlAverages() {
+        ColumnarTable table = new ColumnarTable();
+        table.addLocation(1, "Serbia", 44.8, 20.5);
+        table.addLocation(2, "Serbia", 45.3, null);
+        table.addLocation(3, "Japan", 35.7, 139.7);
+        table.addLocation(4, "Chile", -33.4, -70.6);
+        table.append(10, 1, 5, 20.0, 50, 1010.0);
+        table.append(11, 1, 5, null, null, 1020.0);
+        table.append(12, 2, 7, 10.0, 70, null);
+        table.append(13, 3, 0, 30.0, 80, 1000.0);
+
+        // Unpublished rows are not visible yet
+        assertEquals(0, table.size());
+        table.publish();
+
+        ColumnarTable.Summary summary = table.summarize();
+        assertEquals(4, summary.totals().records);
+        assertEquals(60.0, summary.totals().temperatureSum, 1e-9);
+        assertEquals(3, summary.totals().temperatureCount);
+        assertEquals(200, summary.totals().humiditySum);
+        assertEquals(3, summary.totals().humidityCount);
+        assertEquals(3, summary.totals().pressureCount);
+        assertEquals(2, summary.conditionCounts()[5]);
+        assertEquals(1, summary.conditionCounts()[7]);
+        assertEquals(1, summary.conditionCounts()[0]);
+
+        ColumnarTable.CountrySums serbia = summary.countries().get("Serbia");
+        assertEquals(3, serbia.records);
+        assertEquals(2, serbia.locations);
+        assertEquals(30.0, serbia.temperatureSum, 1e-9);
+        assertEquals(2, serbia.temperatureCount);
+        assertEquals(44.8 * 2 + 45.3, serbia.latitudeSum, 1e-9);
+        assertEquals(3, serbia.latitudeCount);
+        assertEquals(2, serbia.longitudeCount);
+        assertEquals(1, summary.countries().get("Japan").records);
+        // Countries without records are left out, like a GROUP BY over the rows
+        assertEquals(2, summary.countries().size());
+    }
+
+    @Test
+    void parallelScanAgreesWithSequentialSums() {
+        Random random = new Random(3);
+        ColumnarTable table = new ColumnarTable();
+        for (int location = 0; location < 50; location++) {
+            table.addLocation(location, "C" + location % 7, random.nextDouble() * 180 - 90, null);
+        }
+        List<Double> temperatures = new ArrayList<>();
+        long humiditySum = 0;
+        int rows = 300_000;
+        for (int row = 0; row < rows; row++) {
+            Double temperature = random.nextInt(10) == 0 ? null : Math.round(random.nextGaussian() * 150) / 10.0;
+            Integer humidity = random.nextInt(20) == 0 ? null : random.nextInt(101);
+            temperatures.add(temperature);
+            if (humidity != null) humiditySum += humidity;
+            table.append(row, random.nextInt(50), random.nextInt(4), temperature, humidity, null);
+        }
+        table.publish();
+
+        ColumnarTable.Summary summary = table.summarize();
+        List<Double> present = temperatures.stream().filter(t -> t != null).collect(Collectors.toList());
+        assertEquals(rows, summary.totals().records);
+        assertEquals(present.size(), summary.totals().temperatureCount);
+        assertEquals(present.stream().mapToDouble(Double::doubleValue).sum(), summary.totals().temperatureSum, 1e-6);
+        assertEquals(humiditySum, summary.totals().humiditySum);
+        assertEquals(0, summary.totals().pressureCount);
+        assertEquals(rows, summary.countries().values().stream().mapToLong(sums -> sums.records).sum());
+
+        List<Long> hottest = table.topByTemperature(25, true);
+        List<Long> expected = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            if (temperatures.get(row) != null) expected.add((long) row);
+        }
+        expected.sort(Comparator.comparing((Long row) -> temperatures.get(row.intValue())).reversed());
+        assertEquals(expected.subList(0, 25).stream().map(row -> temperatures.get(row.intValue())).collect(Collectors.toList()),
+                hottest.stream().map(row -> temperatures.get(row.intValue())).collect(Collectors.toList()));
+
+        List<Long> coldest = table.topByTemperature(5, false);
+        assertEquals(present.stream().min(Double::compare).orElseThrow(), temperatures.get(coldest.get(0).intValue()));
+        // A limit past the row count returns every present temperature instead of sizing heaps by it
+        assertEquals(present.size(), table.topByTemperature(Integer.MAX_VALUE, true).size());
+    }
+}
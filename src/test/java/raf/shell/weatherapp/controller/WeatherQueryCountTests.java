@@ -0,0 +1,173 @@
+package raf.shell.weatherapp.controller;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import raf.shell.weatherapp.dto.CursorPage;
+import raf.shell.weatherapp.dto.WeatherRecordDTO;
+import raf.shell.weatherapp.entity.AirQuality;
+import raf.shell.weatherapp.entity.Astronomy;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.service.StatisticsService;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Counts the SQL statements behind each endpoint that returns weather records, so a lazy
+ * association touched by WeatherRecordDTO shows up as a failure instead of N extra SELECTs.
+ * Runs in a rolled-back transaction, like a request with open-in-view, on seeded rows.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // Keeps the startup aggregate rebuild from issuing statements while these tests count them
+        "statistics.aggregates.enabled=false"
+})
+@Transactional
+class WeatherQueryCountTests {
+
+    private static final String COUNTRY = "Query Count Test Country";
+    private static final String CONDITION = "Query count test drizzle";
+    private static final int LOCATIONS = 3;
+    private static final int RECORDS_PER_LOCATION = 4;
+
+    @Autowired
+    private WeatherController weatherController;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long locationId;
+    private Long recordId;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < LOCATIONS; i++) {
+            Location location = new Location();
+            location.setCountry(COUNTRY);
+            location.setLocationName("Town " + i);
+            location.setLatitude(10.0 + i);
+            location.setLongitude(20.0 + i);
+            entityManager.persist(location);
+            locationId = location.getId();
+
+            for (int j = 0; j < RECORDS_PER_LOCATION; j++) {
+                AirQuality airQuality = new AirQuality();
+                airQuality.setPm25(5.0 + j);
+                Astronomy astronomy = new Astronomy();
+                astronomy.setSunriseMinutes((short) (6 * 60 + j));
+
+                WeatherRecord record = new WeatherRecord();
+                record.setLocation(location);
+                record.setLastUpdatedEpoch(1_700_000_000L + j * 3600L);
+                record.setLastUpdated(LocalDateTime.ofEpochSecond(record.getLastUpdatedEpoch(), 0, ZoneOffset.UTC));
+                record.setTemperatureCelsius(900.0 + i + j / 10.0);
+                record.setConditionText(CONDITION);
+                record.setAirQuality(airQuality);
+                record.setAstronomy(astronomy);
+                entityManager.persist(record);
+                recordId = record.getId();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void recordsByCountry() {
+        List<WeatherRecordDTO> records = assertStatements(1, () -> weatherController.getRecordsByCountry(COUNTRY, null));
+        assertEquals(LOCATIONS * RECORDS_PER_LOCATION, records.size());
+        assertNotNull(records.get(0).getAirQuality());
+        assertNotNull(records.get(0).getAstronomy());
+    }
+
+    @Test
+    void recordsByCondition() {
+        List<WeatherRecordDTO> records = assertStatements(1, () -> weatherController.getRecordsByCondition(CONDITION, null));
+        assertEquals(LOCATIONS * RECORDS_PER_LOCATION, records.size());
+    }
+
+    @Test
+    void recordsByTemperatureRange() {
+        List<WeatherRecordDTO> records = assertStatements(1,
+                () -> weatherController.getRecordsByTemperatureRange(900.0, 910.0, null));
+        assertEquals(LOCATIONS * RECORDS_PER_LOCATION, records.size());
+    }
+
+    @Test
+    void recordsByLocation() {
+        List<WeatherRecordDTO> records = assertStatements(1, () -> weatherController.getRecordsByLocation(locationId, null));
+        assertEquals(RECORDS_PER_LOCATION, records.size());
+    }
+
+    @Test
+    void recordById() {
+        WeatherRecordDTO record = assertStatements(1, () -> weatherController.getRecordById(recordId, null));
+        assertEquals(COUNTRY, record.getLocation().getCountry());
+    }
+
+    @Test
+    void pageWithAndWithoutCount() {
+        // The COUNT(*) is skipped when the first page is not full
+        long pageStatements = countStatements(() -> weatherController.getAllRecords(0, 20, true, null, null, null));
+        assertTrue(pageStatements <= 2, "page used " + pageStatements + " statements");
+
+        assertStatements(1, () -> weatherController.getAllRecords(0, 20, false, null, null, null));
+    }
+
+    @Test
+    void scroll() {
+        CursorPage<WeatherRecordDTO> first = assertStatements(1, () -> weatherController.scrollRecords(null, 5, null));
+        assertStatements(1, () -> weatherController.scrollRecords(first.getNextCursor(), 5, null));
+    }
+
+    @Test
+    void hottestAndColdest() {
+        List<WeatherRecordDTO> hottest = countThenReturn(1, () -> statisticsService.getHottestLocations(10));
+        assertEquals(COUNTRY, hottest.get(0).getLocation().getCountry());
+        countThenReturn(1, () -> statisticsService.getColdestLocations(10));
+    }
+
+    private <T> T assertStatements(long expected, Supplier<ResponseEntity<T>> endpoint) {
+        return countThenReturn(expected, () -> endpoint.get().getBody());
+    }
+
+    private <T> T countThenReturn(long expected, Supplier<T> call) {
+        statistics.clear();
+        T result = call.get();
+        assertEquals(expected, statistics.getPrepareStatementCount(), "SQL statements");
+        entityManager.clear();
+        return result;
+    }
+
+    private long countStatements(Supplier<?> call) {
+        statistics.clear();
+        call.get();
+        entityManager.clear();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,123 @@
+package raf.shell.weatherapp.ingest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Insert throughput of the loader's write path before and after {@link WeatherBulkWriter}: one
+ * INSERT per row with its generated id read back, which is what Hibernate does for IDENTITY ids,
+ * against batches rewritten into multi-row INSERTs that read back all their ids at once. Both copy
+ * the loaded weather_records into a scratch table with the same schema and commit every 1,000 rows.
+ * Not a test; run the main method with the JDBC url, user and password of a database that has data
+ * loaded (the url needs rewriteBatchedStatements=true, which the default has).
+ */
+public class BulkInsertBenchmark {
+
+    private static final int ROUNDS = 3;
+    private static final int BATCH_SIZE = 1000;
+    private static final String TABLE = "weather_records_insert_benchmark";
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "jdbc:mysql://localhost:3306/weatherapp?rewriteBatchedStatements=true";
+        String user = args.length > 1 ? args[1] : "root";
+        String password = args.length > 2 ? args[2] : "";
+
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Statement statement = connection.createStatement()) {
+            List<String> columns = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT COLUMN_NAME FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'weather_records' AND COLUMN_NAME <> 'id' " +
+                    "ORDER BY ORDINAL_POSITION")) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+            List<Object[]> rows = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT " + String.join(", ", columns) + " FROM weather_records")) {
+                while (rs.next()) {
+                    Object[] row = new Object[columns.size()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rows.add(row);
+                }
+            }
+            String insert = "INSERT INTO " + TABLE + " (" + String.join(", ", columns) + ") VALUES (" +
+                    String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " LIKE weather_records");
+            try {
+                for (int round = 1; round <= ROUNDS; round++) {
+                    statement.execute("TRUNCATE TABLE " + TABLE);
+                    measure("row", round, () -> insert(connection, insert, rows, false));
+                    statement.execute("TRUNCATE TABLE " + TABLE);
+                    measure("batched", round, () -> insert(connection, insert, rows, true));
+                }
+            } finally {
+                statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            }
+        }
+    }
+
+    // Returns the number of generated ids read back, which has to match the rows inserted
+    private static long insert(Connection connection, String sql, List<Object[]> rows, boolean batched) throws SQLException {
+        long ids = 0;
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+                for (Object[] row : rows.subList(from, Math.min(rows.size(), from + BATCH_SIZE))) {
+                    for (int i = 0; i < row.length; i++) {
+                        statement.setObject(i + 1, row[i]);
+                    }
+                    if (batched) {
+                        statement.addBatch();
+                    } else {
+                        statement.executeUpdate();
+                        ids += count(statement.getGeneratedKeys());
+                    }
+                }
+                if (batched) {
+                    statement.executeBatch();
+                    ids += count(statement.getGeneratedKeys());
+                }
+                connection.commit();
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        if (ids != rows.size()) {
+            throw new IllegalStateException(ids + " generated ids for " + rows.size() + " rows");
+        }
+        return ids;
+    }
+
+    private static long count(ResultSet keys) throws SQLException {
+        long count = 0;
+        try (keys) {
+            while (keys.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private interface Run {
+        long rows() throws SQLException;
+    }
+
+    private static void measure(String name, int round, Run run) throws SQLException {
+        long start = System.nanoTime();
+        long rows = run.rows();
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-8s round %d: %,d rows in %,.1f ms, %,.0f rows/s%n",
+                name, round, rows, nanos / 1e6, rows * 1e9 / nanos);
+    }
+}
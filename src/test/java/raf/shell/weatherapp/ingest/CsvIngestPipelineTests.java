@@ -0,0 +1,58 @@
+package raf.shell.weatherapp.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class CsvIngestPipelineTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void writesEveryParsedRow() {
+        AtomicLong sum = new AtomicLong();
+        long written = assertTimeoutPreemptively(TIMEOUT, () ->
+                new CsvIngestPipeline<Integer, Integer>(4, 2, 10, 7).run(counter(1000), row -> row % 3 == 0 ? null : row,
+                        batch -> batch.forEach(sum::addAndGet)));
+        assertEquals(667, written);
+        assertEquals(500_500 - 3 * (333 * 334 / 2), sum.get());
+    }
+
+    @Test
+    void parserErrorFailsTheRunInsteadOfHanging() {
+        AssertionError error = new AssertionError("parser died");
+        RuntimeException failure = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(RuntimeException.class, () ->
+                new CsvIngestPipeline<Integer, Integer>(2, 1, 5, 10).run(counter(10_000), row -> {
+                    if (row == 4321) throw error;
+                    return row;
+                }, batch -> { })));
+        assertSame(error, failure.getCause());
+    }
+
+    @Test
+    void readerErrorFailsTheRunInsteadOfHanging() {
+        StackOverflowError error = new StackOverflowError();
+        AtomicInteger rows = new AtomicInteger();
+        RuntimeException failure = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(RuntimeException.class, () ->
+                new CsvIngestPipeline<Integer, Integer>(3, 1, 5, 10).run(() -> {
+                    if (rows.incrementAndGet() == 500) throw error;
+                    return rows.get();
+                }, row -> row, batch -> { })));
+        assertSame(error, failure.getCause());
+    }
+
+    private static CsvIngestPipeline.RowSource<Integer> counter(int rows) {
+        AtomicInteger next = new AtomicInteger();
+        return () -> {
+            int row = next.incrementAndGet();
+            return row <= rows ? row : null;
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package raf.shell.weatherapp.ingest;
+
+import com.opencsv.CSVReader;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Single-threaded parse throughput and allocation of the OpenCSV path against the mapped tokenizer.
+ * Not a test; run the main method with the CSV as argument (defaults to a generated 200k row file).
+ */
+public class CsvParseBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        Path csv;
+        if (args.length > 0) {
+            csv = Path.of(args[0]);
+        } else {
+            csv = Files.createTempFile("weather-benchmark", ".csv");
+            csv.toFile().deleteOnExit();
+            Files.writeString(csv, WeatherCsvTokenizerTests.generateCsv(new Random(1), 200_000));
+        }
+
+        LocationIndex locationIndex = new LocationIndex();
+        WeatherCsvTokenizer tokenizer = WeatherCsvTokenizer.map(csv);
+        WeatherCsvTokenizer.RowCursor cursor = tokenizer.cursor();
+        WeatherCsvTokenizer.RowSpan span;
+        while ((span = cursor.readNext()) != null) {
+            tokenizer.resolveLocation(span, locationIndex, new ArrayList<Location>());
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            measure("opencsv", round, () -> {
+                long rows = 0;
+                try (CSVReader reader = new CSVReader(new FileReader(csv.toFile()))) {
+                    reader.skip(1);
+                    String[] row;
+                    while ((row = reader.readNext()) != null) {
+                        if (WeatherCsvRowMapper.toRecord(row, locationIndex) != null) rows++;
+                    }
+                }
+                return rows;
+            });
+            measure("mapped", round, () -> {
+                long rows = 0;
+                WeatherCsvTokenizer.RowCursor rowCursor = tokenizer.cursor();
+                WeatherCsvTokenizer.RowSpan row;
+                while ((row = rowCursor.readNext()) != null) {
+                    WeatherRecord record = tokenizer.parseRecord(row, locationIndex);
+                    if (record != null) rows++;
+                }
+                return rows;
+            });
+        }
+    }
+
+    private interface Run {
+        long rows() throws Exception;
+    }
+
+    private static void measure(String name, int round, Run run) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long rows = run.rows();
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%-8s round %d: %,d rows, %,.0f rows/s, %,d bytes/row, %,.1f MB/s allocated%n",
+                name, round, rows, rows * 1e9 / nanos, allocated / Math.max(rows, 1),
+                allocated / 1e6 / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,137 @@
+package raf.shell.weatherapp.ingest;
+
+import com.opencsv.CSVReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+
+import java.io.FileReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WeatherCsvTokenizerTests {
+
+    private static final String[] ODD_VALUES = {
+            "", "-0.0", "0.1", "+4.25", ".5", "5.", "1e5", "1E-300", "12345678901234567", "123456789012345.6",
+            "1.7976931348623157E308", "4.9e-324", "NaN", "abc", " 3", "-", "99999999999999999999"
+    };
+
+    // Epochs at and past the ends of the long range, where the fast path's sentinel sits
+    private static final String[] ODD_EPOCHS = {
+            "-9223372036854775808", "9223372036854775807", "9223372036854775808", "-9223372036854775809", "", "x1"
+    };
+
+    private static final String[] CLOCK_TIMES = {
+            "06:04 AM", "12:00 AM", "12:30 PM", "11:59 PM", "07:45 pm", "6:04 AM", "13:00 PM", "06:60 AM",
+            "No moonrise", "No moonset", ""
+    };
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void producesSameRecordsAsOpenCsv() throws Exception {
+        Path csv = tempDir.resolve("weather.csv");
+        Files.writeString(csv, generateCsv(new Random(42), 5000));
+
+        LocationIndex locationIndex = new LocationIndex();
+        WeatherCsvTokenizer tokenizer = WeatherCsvTokenizer.map(csv);
+        WeatherCsvTokenizer.RowCursor cursor = tokenizer.cursor();
+        List<Location> newLocations = new ArrayList<>();
+        WeatherCsvTokenizer.RowSpan row;
+        while ((row = cursor.readNext()) != null) {
+            tokenizer.resolveLocation(row, locationIndex, newLocations);
+        }
+
+        List<WeatherRecord> expected = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new FileReader(csv.toFile()))) {
+            reader.skip(1);
+            String[] fields;
+            while ((fields = reader.readNext()) != null) {
+                expected.add(WeatherCsvRowMapper.toRecord(fields, locationIndex));
+            }
+        }
+
+        List<WeatherRecord> actual = new ArrayList<>();
+        cursor = tokenizer.cursor();
+        while ((row = cursor.readNext()) != null) {
+            actual.add(tokenizer.parseRecord(row, locationIndex));
+        }
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i), "row " + (i + 1));
+        }
+    }
+
+    @Test
+    void handlesQuotedAndEscapedFields() throws Exception {
+        Path csv = tempDir.resolve("quoted.csv");
+        String[] fields = new String[WeatherCsvRowMapper.COLUMN_COUNT];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = String.valueOf(i);
+        }
+        fields[0] = "Country";
+        fields[1] = "\"St. John\"\"s\"";
+        fields[6] = "2024-05-16 13:15";
+        fields[9] = " \"Light rain, shower\"";
+        fields[35] = "\"06:00 \\\"AM\\\"\"";
+        fields[36] = "\"07:45 PM\"";
+        Files.writeString(csv, "header\r\n" + String.join(",", fields) + "\r\nshort,row\r\n");
+
+        LocationIndex locationIndex = new LocationIndex();
+        WeatherCsvTokenizer tokenizer = WeatherCsvTokenizer.map(csv);
+        WeatherCsvTokenizer.RowCursor cursor = tokenizer.cursor();
+        WeatherCsvTokenizer.RowSpan row = cursor.readNext();
+
+        Location location = tokenizer.resolveLocation(row, locationIndex, new ArrayList<>());
+        WeatherRecord record = tokenizer.parseRecord(row, locationIndex);
+
+        assertEquals("St. John\"s", location.getLocationName());
+        assertEquals("Light rain, shower", record.getConditionText());
+        assertNull(record.getAstronomy().getSunriseMinutes());
+        assertEquals((short) (19 * 60 + 45), record.getAstronomy().getSunsetMinutes());
+        assertEquals(7.0, record.getTemperatureCelsius());
+        assertNull(tokenizer.parseRecord(cursor.readNext(), locationIndex));
+        assertNull(cursor.readNext());
+    }
+
+    static String generateCsv(Random random, int rows) {
+        StringBuilder csv = new StringBuilder("country,location_name,latitude,...\n");
+        for (int r = 0; r < rows; r++) {
+            List<String> fields = new ArrayList<>();
+            fields.add("Country " + random.nextInt(20));
+            fields.add("City " + random.nextInt(200));
+            for (int i = 2; i < WeatherCsvRowMapper.COLUMN_COUNT; i++) {
+                double value = random.nextDouble() * Math.pow(10, random.nextInt(8) - 3) * (random.nextBoolean() ? 1 : -1);
+                fields.add(switch (random.nextInt(4)) {
+                    case 0 -> ODD_VALUES[random.nextInt(ODD_VALUES.length)];
+                    case 1 -> String.valueOf(value);
+                    case 2 -> String.format("%.2f", value);
+                    default -> String.valueOf(random.nextInt(200) - 100);
+                });
+            }
+            fields.set(4, "Europe/Belgrade");
+            fields.set(5, random.nextInt(20) == 0 ? ODD_EPOCHS[random.nextInt(ODD_EPOCHS.length)]
+                    : String.valueOf(1_715_000_000L + random.nextInt(1_000_000)));
+            fields.set(6, random.nextInt(20) == 0 ? "2024-02-30 10:00"
+                    : String.format("2024-%02d-%02d %02d:%02d", 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    random.nextInt(24), random.nextInt(60)));
+            fields.set(9, random.nextBoolean() ? "Partly cloudy" : "\"Light rain, shower\"");
+            fields.set(13, "NNE");
+            for (int i = 35; i <= 38; i++) {
+                fields.set(i, CLOCK_TIMES[random.nextInt(CLOCK_TIMES.length)]);
+            }
+            fields.set(39, "Waxing Gibbous");
+            csv.append(String.join(",", fields)).append(random.nextBoolean() ? "\r\n" : "\n");
+        }
+        return csv.toString();
+    }
+}
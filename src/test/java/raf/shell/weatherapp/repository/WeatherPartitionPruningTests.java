@@ -0,0 +1,194 @@
+package raf.shell.weatherapp.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import raf.shell.weatherapp.ingest.IngestJob;
+import raf.shell.weatherapp.ingest.IngestMode;
+import raf.shell.weatherapp.ingest.WeatherCsvRowMapper;
+import raf.shell.weatherapp.ingest.WeatherPartitions;
+import raf.shell.weatherapp.service.CsvDataLoaderService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the time-window queries of {@link WeatherRecordRepository}, captures the SQL Hibernate
+ * generates for them and EXPLAINs it against the partitioned weather_records, checking that MySQL
+ * reads only the partitions of the months inside the window. Past months are loaded through the
+ * CSV loader, which has to give them partitions of their own first.
+ */
+@SpringBootTest(properties = {
+        "statistics.aggregates.enabled=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "raf.shell.weatherapp.repository.WeatherPartitionPruningTests$CapturingInspector"
+})
+class WeatherPartitionPruningTests {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final YearMonth THIS_MONTH = YearMonth.now();
+    private static final String COUNTRY = "Partition Pruning Test Country";
+
+    // Records the statements of the calling thread, so other threads' queries never get mixed in
+    public static class CapturingInspector implements StatementInspector {
+
+        private static final ThreadLocal<List<String>> STATEMENTS = ThreadLocal.withInitial(ArrayList::new);
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.get().add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private WeatherPartitions weatherPartitions;
+
+    @Autowired
+    private WeatherRecordRepository weatherRecordRepository;
+
+    @Autowired
+    private CsvDataLoaderService csvDataLoaderService;
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, BiConsumer<LocalDateTime, LocalDateTime>> queries = Map.of(
+            "findSliceInWindow", (from, to) -> weatherRecordRepository.findSliceInWindow(from, to, PageRequest.of(0, PAGE_SIZE)),
+            "countByConditionInWindow", (from, to) -> weatherRecordRepository.countByConditionInWindow(from, to),
+            "findAverageTemperatureByCountryInWindow",
+            (from, to) -> weatherRecordRepository.findAverageTemperatureByCountryInWindow(from, to));
+
+    @BeforeEach
+    void partitioned() {
+        assertTrue(weatherPartitions.isPartitioned());
+        weatherPartitions.ensureFuturePartitions();
+    }
+
+    @Test
+    void monthWindowReadsOnePartition() {
+        for (String query : queries.keySet()) {
+            assertEquals(List.of(name(THIS_MONTH)), partitions(query, start(THIS_MONTH), start(THIS_MONTH.plusMonths(1))), query);
+        }
+    }
+
+    @Test
+    void windowAcrossMonthsReadsEachOfThem() {
+        LocalDateTime from = start(THIS_MONTH).plusDays(14);
+        LocalDateTime to = start(THIS_MONTH.plusMonths(2)).plusDays(3);
+        assertEquals(List.of(name(THIS_MONTH), name(THIS_MONTH.plusMonths(1)), name(THIS_MONTH.plusMonths(2))),
+                partitions("countByConditionInWindow", from, to));
+    }
+
+    @Test
+    void openStartStopsAtTheUpperBound() {
+        List<String> partitions = partitions("findSliceInWindow", LocalDateTime.of(1000, 1, 1, 0, 0),
+                start(THIS_MONTH.plusMonths(1)));
+        assertEquals("p_before", partitions.get(0));
+        assertEquals(name(THIS_MONTH), partitions.get(partitions.size() - 1));
+        assertFalse(partitions.contains("p_future"));
+    }
+
+    @Test
+    void openEndStartsAtTheLowerBound() {
+        List<String> partitions = partitions("findAverageTemperatureByCountryInWindow", start(THIS_MONTH.plusMonths(1)),
+                LocalDateTime.of(9999, 12, 31, 23, 59, 59));
+        assertEquals(name(THIS_MONTH.plusMonths(1)), partitions.get(0));
+        assertEquals("p_future", partitions.get(partitions.size() - 1));
+        assertFalse(partitions.contains(name(THIS_MONTH)));
+    }
+
+    @Test
+    void loadedPastMonthGetsItsOwnPartition() throws Exception {
+        YearMonth past = THIS_MONTH.minusYears(3);
+        LocalDateTime lastUpdated = start(past).plusDays(9).plusHours(12);
+        Path csv = tempDir.resolve("past.csv");
+        Files.writeString(csv, "header\n" + csvRow(lastUpdated) + "\n");
+
+        try {
+            IngestJob job = new IngestJob("partition-pruning-test", csv.toString(), IngestMode.INCREMENTAL, List.of(csv));
+            csvDataLoaderService.loadCsvData(job);
+            assertEquals(IngestJob.State.COMPLETED, job.getState());
+
+            Long inPartition = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM weather_records PARTITION (" + name(past) +
+                    ") w JOIN locations l ON l.id = w.location_id WHERE l.country = ?", Long.class, COUNTRY);
+            assertEquals(1L, inPartition);
+            assertEquals(List.of(name(past)), partitions("countByConditionInWindow", start(past), start(past.plusMonths(1))));
+        } finally {
+            jdbcTemplate.update("DELETE w FROM weather_records w JOIN locations l ON l.id = w.location_id WHERE l.country = ?",
+                    COUNTRY);
+            jdbcTemplate.update("DELETE FROM locations WHERE country = ?", COUNTRY);
+        }
+    }
+
+    // Runs the repository query, then EXPLAINs the weather_records statement Hibernate sent for it
+    private List<String> partitions(String query, LocalDateTime from, LocalDateTime to) {
+        CapturingInspector.STATEMENTS.get().clear();
+        queries.get(query).accept(from, to);
+        String sql = CapturingInspector.STATEMENTS.get().stream()
+                .filter(statement -> statement.contains("weather_records"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No weather_records statement captured for " + query));
+
+        // The window bounds come first; any further parameter is the page limit
+        Object[] args = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+        Arrays.fill(args, PAGE_SIZE + 1);
+        args[0] = from;
+        args[1] = to;
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, args);
+        String partitions = plan.stream()
+                .map(row -> (String) row.get("partitions"))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No partitioned table in the plan of " + sql));
+        return Arrays.asList(partitions.split(","));
+    }
+
+    private static String csvRow(LocalDateTime lastUpdated) {
+        String[] fields = new String[WeatherCsvRowMapper.COLUMN_COUNT];
+        Arrays.fill(fields, "1");
+        fields[0] = COUNTRY;
+        fields[1] = "Old Town";
+        fields[4] = "UTC";
+        fields[5] = String.valueOf(lastUpdated.toEpochSecond(ZoneOffset.UTC));
+        fields[6] = lastUpdated.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        fields[9] = "Partly cloudy";
+        fields[13] = "NNE";
+        for (int i = 35; i <= 38; i++) {
+            fields[i] = "06:04 AM";
+        }
+        fields[39] = "Waxing Gibbous";
+        return String.join(",", fields);
+    }
+
+    private static LocalDateTime start(YearMonth month) {
+        return month.atDay(1).atStartOfDay();
+    }
+
+    private static String name(YearMonth month) {
+        return WeatherPartitions.monthPartitionName(month);
+    }
+}
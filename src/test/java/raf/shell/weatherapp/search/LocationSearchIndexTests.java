@@ -0,0 +1,74 @@
+package raf.shell.weatherapp.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocationSearchIndexTests {
+
+    private LocationSearchIndex index;
+
+    @BeforeEach
+    void build() {
+        index = new LocationSearchIndex();
+        index.addLocation(1, "São Paulo", "Brazil");
+        index.addLocation(2, "Paris", "France");
+        index.addLocation(3, "Parakou", "Benin");
+        index.addLocation(4, "Zürich", "Switzerland");
+        index.addLocation(5, "Port Moresby", "Papua New Guinea");
+        index.addLocation(6, "Łódź", "Poland");
+        index.addRecords(3, 100);
+        index.addRecords(2, 10);
+    }
+
+    @Test
+    void foldsCaseAccentsAndPunctuation() {
+        assertEquals("sao paulo", LocationSearchIndex.fold("  SÃO-Paulo!! "));
+        assertEquals("lodz", LocationSearchIndex.fold("Łódź"));
+        assertEquals("", LocationSearchIndex.fold(null));
+    }
+
+    @Test
+    void ranksNamePrefixesBeforeWordPrefixesThenByRecordCount() {
+        assertEquals(List.of(3L, 2L, 5L, 1L), ids(index.autocomplete("pa", 10)));
+        assertEquals(List.of(3L, 2L), ids(index.autocomplete("pa", 2)));
+        assertEquals(List.of(4L), ids(index.autocomplete("ZURICH", 10)));
+        assertEquals(List.of(6L), ids(index.autocomplete("lodz", 10)));
+        // Country names match too
+        assertEquals(List.of(4L), ids(index.autocomplete("switz", 10)));
+        assertEquals(List.of(), ids(index.autocomplete(" -", 10)));
+    }
+
+    @Test
+    void exactNamesComeFirstAndSubstringsAfterPrefixes() {
+        index.addLocation(7, "Paris Springs", "United States of America");
+        index.addRecords(7, 1_000);
+        assertEquals(List.of(2L, 7L), ids(index.autocomplete("paris", 10)));
+        assertEquals(List.of(1L), ids(index.autocomplete("aulo", 10)));
+    }
+
+    @Test
+    void containingMatchesSubstringsOfLocationNames() {
+        assertEquals(List.of(2L), index.containing("ARI"));
+        assertEquals(List.of(1L, 2L, 3L), index.containing("a"));
+        assertEquals(List.of(1L), index.containing("são p"));
+        assertEquals(List.of(), index.containing("brazil"));
+    }
+
+    @Test
+    void laterLocationsAreIndexedIncrementally() {
+        index.addLocation(8, "Parma", "Italy");
+        index.addLocation(8, "Ignored", "Ignored");
+        index.addRecords(8, 50);
+        assertEquals(List.of(3L, 8L, 2L), ids(index.autocomplete("par", 3)));
+        assertEquals(7, index.size());
+    }
+
+    private static List<Long> ids(List<LocationSearchIndex.Match> matches) {
+        return matches.stream().map(LocationSearchIndex.Match::locationId).collect(Collectors.toList());
+    }
+}
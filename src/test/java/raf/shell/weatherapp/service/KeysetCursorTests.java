@@ -0,0 +1,35 @@
+package raf.shell.weatherapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeysetCursorTests {
+
+    @Test
+    void roundTripsValuesIncludingNulls() {
+        String[] values = {"Côte d'Ivoire", "Yamoussoukro, \"capital\"", null, "", "1700000000"};
+        String token = KeysetCursor.encode(values);
+
+        assertEquals(Arrays.asList(values), KeysetCursor.decode(token, values.length));
+        assertEquals(token, token.replaceAll("[^A-Za-z0-9_-]", ""));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        String token = KeysetCursor.encode("1700000000", "42");
+
+        assertEquals(List.of("1700000000", "42"), KeysetCursor.decode(token, 2));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(token, 3));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(token.substring(0, token.length() - 2), 2));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(token + "AAAA", 2));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("not a cursor!", 2));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(
+                Base64.getUrlEncoder().encodeToString(new byte[]{2, 1}), 2));
+    }
+}
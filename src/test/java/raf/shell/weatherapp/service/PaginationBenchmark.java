@@ -0,0 +1,76 @@
+package raf.shell.weatherapp.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Latency of reaching increasingly deep pages of /api/weather with offset pages, count-free
+ * slices and keyset cursors. Offset pages are requested directly; the cursor is walked page by
+ * page and timed at the same depths. Not a test; run the main method against a loaded instance
+ * with the base URL as first argument (defaults to http://localhost:8080).
+ */
+public class PaginationBenchmark {
+
+    private static final int SIZE = 100;
+    private static final int[] DEPTHS = {0, 10, 100, 1_000, 5_000};
+    private static final int ROUNDS = 5;
+    private static final Pattern NEXT_CURSOR = Pattern.compile("\"nextCursor\"\\s*:\\s*\"([^\"]+)\"");
+
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = (args.length > 0 ? args[0] : "http://localhost:8080") + "/api/weather";
+
+        System.out.printf("%8s %12s %12s %12s%n", "page", "offset ms", "slice ms", "cursor ms");
+        String cursor = null;
+        int page = 0;
+        for (int depth : DEPTHS) {
+            // Walk the cursor up to this depth; only the request for the page itself is timed
+            while (page < depth) {
+                cursor = nextCursor(get(scrollUrl(baseUrl, cursor)));
+                page++;
+            }
+            String scroll = scrollUrl(baseUrl, cursor);
+            System.out.printf("%8d %12.1f %12.1f %12.1f%n", depth,
+                    time(baseUrl + "?size=" + SIZE + "&page=" + depth),
+                    time(baseUrl + "?size=" + SIZE + "&page=" + depth + "&count=false"),
+                    time(scroll));
+        }
+    }
+
+    private static String scrollUrl(String baseUrl, String cursor) {
+        return baseUrl + "/scroll?size=" + SIZE + (cursor != null ? "&cursor=" + cursor : "");
+    }
+
+    // Best of several rounds, in milliseconds
+    private static double time(String url) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            get(url);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000.0;
+    }
+
+    private static String get(String url) throws Exception {
+        HttpResponse<String> response = CLIENT.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " for " + url);
+        }
+        return response.body();
+    }
+
+    private static String nextCursor(String body) {
+        Matcher matcher = NEXT_CURSOR.matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Ran out of pages before the requested depth");
+        }
+        return matcher.group(1);
+    }
+}
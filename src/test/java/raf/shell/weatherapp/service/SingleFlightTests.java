@@ -0,0 +1,119 @@
+package raf.shell.weatherapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTests {
+
+    private static final int CALLERS = 32;
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Object>> results = runConcurrently(() -> singleFlight.execute("statistics:dashboard", () -> {
+            executions.incrementAndGet();
+            await(release);
+            return new Object();
+        }), release);
+
+        Object first = results.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            assertSame(first, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+
+        Map<String, Object> stats = singleFlight.stats();
+        assertEquals(1L, stats.get("executions"));
+        assertEquals((long) CALLERS - 1, stats.get("executionsSaved"));
+        assertEquals(0, stats.get("inFlight"));
+    }
+
+    @Test
+    void followersSeeTheLeadersException() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Object>> results = runConcurrently(() -> {
+            try {
+                return singleFlight.execute("search:bel", () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    throw new IllegalStateException("database unavailable");
+                });
+            } catch (IllegalStateException e) {
+                return e;
+            }
+        }, release);
+
+        Object first = results.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            assertSame(first, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void completedCallsAreNotReused() {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("statistics:hottest:10", executions::incrementAndGet);
+        singleFlight.execute("statistics:hottest:10", executions::incrementAndGet);
+        singleFlight.execute("statistics:coldest:10", executions::incrementAndGet);
+        assertThrows(IllegalArgumentException.class, () -> singleFlight.execute("statistics:hottest:10", () -> {
+            throw new IllegalArgumentException();
+        }));
+
+        assertEquals(3, executions.get());
+        assertEquals(4L, singleFlight.stats().get("executions"));
+    }
+
+    // Starts every caller, waits until they are all inside execute() and then lets the leader finish
+    private static List<Future<Object>> runConcurrently(Callable<Object> call,
+                                                       CountDownLatch release) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch started = new CountDownLatch(CALLERS);
+        List<Future<Object>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> {
+                    started.countDown();
+                    return call.call();
+                }));
+            }
+            started.await(10, TimeUnit.SECONDS);
+            // Followers block in join(), which started.await() cannot observe; give them a moment to arrive
+            Thread.sleep(200);
+            release.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package raf.shell.weatherapp.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fires bursts of identical concurrent requests at a running instance and reports latency
+ * percentiles per burst. The target is the windowed temperature-by-country statistic, which
+ * always runs its GROUP BY in MySQL; start the instance with statistics.cache.enabled=false so
+ * every burst reaches the database, then compare the p99 and the singleFlight section of
+ * /api/monitoring/metrics with coalescing on and off (single-flight.enabled). Not a test; run the
+ * main method with the base URL (defaults to http://localhost:8080) and optionally the window
+ * start as arguments.
+ */
+public class ThunderingHerdLoadTest {
+
+    private static final int CLIENTS = 64;
+    private static final int BURSTS = 20;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        String from = args.length > 1 ? args[1] : "2000-01-01T00:00:00";
+        URI uri = URI.create(baseUrl + "/api/statistics/temperature-by-country?from=" + from);
+
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(8)).build();
+        ExecutorService callers = Executors.newFixedThreadPool(CLIENTS);
+        long[] allMicros = new long[CLIENTS * BURSTS];
+
+        try {
+            for (int burst = 0; burst < BURSTS; burst++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Long>> latencies = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    latencies.add(callers.submit(() -> {
+                        start.await();
+                        long begin = System.nanoTime();
+                        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("HTTP " + response.statusCode());
+                        }
+                        return (System.nanoTime() - begin) / 1000;
+                    }));
+                }
+                start.countDown();
+
+                long[] micros = new long[CLIENTS];
+                for (int i = 0; i < CLIENTS; i++) {
+                    micros[i] = latencies.get(i).get();
+                }
+                System.arraycopy(micros, 0, allMicros, burst * CLIENTS, CLIENTS);
+                Arrays.sort(micros);
+                System.out.printf("burst %2d: p50 %.1f ms, p99 %.1f ms%n", burst + 1,
+                        percentile(micros, 0.50), percentile(micros, 0.99));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        Arrays.sort(allMicros);
+        System.out.printf("overall:  p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", percentile(allMicros, 0.50),
+                percentile(allMicros, 0.99), allMicros[allMicros.length - 1] / 1000.0);
+        System.exit(0);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
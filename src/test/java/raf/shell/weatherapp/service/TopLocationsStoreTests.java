@@ -0,0 +1,125 @@
+package raf.shell.weatherapp.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.transaction.AfterTransaction;
+import org.springframework.transaction.annotation.Transactional;
+import raf.shell.weatherapp.entity.AirQuality;
+import raf.shell.weatherapp.entity.Location;
+import raf.shell.weatherapp.entity.WeatherRecord;
+import raf.shell.weatherapp.event.WeatherDataResetEvent;
+import raf.shell.weatherapp.event.WeatherRecordsAddedEvent;
+import raf.shell.weatherapp.repository.WeatherRecordRepository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ranks seeded rows with the in-memory extremes and with the SQL window query and expects the
+ * same record ids, one per location. The seeded rows are rolled back and the store rebuilt.
+ */
+@SpringBootTest(properties = {
+        "statistics.aggregates.enabled=false",
+        // The test rebuilds the store itself; a startup rebuild running alongside could overwrite it
+        "csv.ingest.build-views-on-startup=false"
+})
+@Transactional
+class TopLocationsStoreTests {
+
+    private static final int LOCATIONS = 6;
+    private static final int RECORDS_PER_LOCATION = 8;
+
+    @Autowired
+    private TopLocationsStore topLocationsStore;
+
+    @Autowired
+    private WeatherRecordRepository weatherRecordRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final Random random = new Random(7);
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < LOCATIONS; i++) {
+            Location location = new Location();
+            location.setCountry("Top K Test Country");
+            location.setLocationName("Town " + i);
+            entityManager.persist(location);
+            for (int j = 0; j < RECORDS_PER_LOCATION; j++) {
+                entityManager.persist(record(location, j));
+            }
+        }
+        entityManager.flush();
+        topLocationsStore.onReset(new WeatherDataResetEvent());
+    }
+
+    @AfterTransaction
+    void rebuild() {
+        topLocationsStore.onReset(new WeatherDataResetEvent());
+    }
+
+    @Test
+    void storeRanksLikeTheWindowQuery() {
+        assertSameRanking();
+    }
+
+    @Test
+    void ingestedRecordsUpdateTheRanking() {
+        Location location = new Location();
+        location.setCountry("Top K Test Country");
+        location.setLocationName("Late Town");
+        entityManager.persist(location);
+        List<WeatherRecord> added = List.of(record(location, 0), record(location, 1), record(location, 2));
+        added.forEach(entityManager::persist);
+        entityManager.flush();
+
+        topLocationsStore.onRecordsAdded(new WeatherRecordsAddedEvent(added));
+        assertSameRanking();
+    }
+
+    private void assertSameRanking() {
+        for (TopLocationsStore.Metric metric : TopLocationsStore.Metric.values()) {
+            for (boolean highest : List.of(true, false)) {
+                for (boolean latest : List.of(true, false)) {
+                    List<Long> ids = topLocationsStore.top(metric, highest, 5, latest);
+                    String description = metric + (highest ? " highest" : " lowest") + (latest ? " latest" : "");
+                    assertEquals(topLocationsStore.queryTop(metric, highest, 5, latest), ids, description);
+
+                    Set<Long> locations = new HashSet<>();
+                    for (WeatherRecord record : weatherRecordRepository.findByIdInOrder(ids)) {
+                        assertTrue(locations.add(record.getLocation().getId()), description);
+                    }
+                }
+            }
+        }
+    }
+
+    // Small value ranges, so ties between records are common
+    private WeatherRecord record(Location location, int hour) {
+        AirQuality airQuality = new AirQuality();
+        airQuality.setPm25(random.nextInt(5) == 0 ? null : (double) random.nextInt(200));
+
+        WeatherRecord record = new WeatherRecord();
+        record.setLocation(location);
+        record.setLastUpdatedEpoch(random.nextInt(6) == 0 ? null : 2_000_000_000L + random.nextInt(4) * 3600L);
+        record.setLastUpdated(LocalDateTime.ofEpochSecond(2_000_000_000L + hour * 60L, 0, ZoneOffset.UTC));
+        record.setTemperatureCelsius(random.nextInt(5) == 0 ? null : 500.0 + random.nextInt(20));
+        record.setUvIndex((double) random.nextInt(12));
+        record.setWindKph(random.nextInt(3) == 0 ? null : random.nextInt(40) / 2.0);
+        record.setPrecipMm(random.nextInt(10) / 10.0);
+        record.setAirQuality(airQuality);
+        return record;
+    }
+}
@@ -0,0 +1,75 @@
+package raf.shell.weatherapp.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KllSketchTests {
+
+    @Test
+    void mergedQuantilesStayWithinTheRankError() {
+        Random random = new Random(11);
+        int n = 500_000;
+        double[] values = new double[n];
+        KllSketch[] parts = {new KllSketch(200), new KllSketch(200), new KllSketch(200)};
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextGaussian() * 12 + 15;
+            parts[i % parts.length].update(values[i]);
+        }
+        KllSketch merged = new KllSketch(200);
+        for (KllSketch part : parts) {
+            merged.merge(part);
+        }
+        Arrays.sort(values);
+
+        assertEquals(n, merged.count());
+        assertEquals(values[0], merged.min());
+        assertEquals(values[n - 1], merged.max());
+        // Memory stays near 3k values however long the stream
+        assertTrue(merged.retained() < 3 * 200 + 64, "retained " + merged.retained());
+
+        for (double rank = 0.01; rank < 1; rank += 0.01) {
+            double estimate = merged.quantile(rank);
+            int position = Arrays.binarySearch(values, estimate);
+            double actualRank = (double) position / n;
+            assertTrue(Math.abs(actualRank - rank) <= KllSketch.rankError(200),
+                    "rank " + rank + " estimated at " + actualRank);
+        }
+    }
+
+    @Test
+    void histogramWeightsAddUpToTheCount() {
+        KllSketch sketch = new KllSketch(64);
+        for (int i = 0; i < 100_000; i++) {
+            sketch.update(i % 100);
+        }
+        long[] histogram = sketch.histogram(10);
+        assertEquals(100_000, Arrays.stream(histogram).sum());
+        for (long count : histogram) {
+            assertEquals(10_000, count, 100_000 * KllSketch.histogramError(64));
+        }
+    }
+
+    @Test
+    void smallAndEmptySketches() {
+        KllSketch sketch = new KllSketch(KllSketch.kForBudget(8192));
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertEquals(0, sketch.histogram(4)[0]);
+
+        sketch.update(3);
+        sketch.update(Double.NaN);
+        sketch.update(1);
+        sketch.update(2);
+        assertEquals(3, sketch.count());
+        assertEquals(2, sketch.quantile(0.5));
+        assertEquals(1, sketch.quantile(0));
+        assertEquals(3, sketch.quantile(1));
+        assertEquals(sketch.quantile(0.5), sketch.copy().quantile(0.5));
+        assertThrows(IllegalArgumentException.class, () -> sketch.quantile(1.5));
+    }
+}
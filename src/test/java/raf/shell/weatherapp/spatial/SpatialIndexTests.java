@@ -0,0 +1,103 @@
+package raf.shell.weatherapp.spatial;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialIndexTests {
+
+    private static final int POINTS = 5_000;
+
+    private final Random random = new Random(5);
+    private SpatialIndex index;
+    private double[][] points;
+
+    // Uniform over the sphere, with every 50th point on the antimeridian; added one at a time
+    @BeforeEach
+    void build() {
+        index = new SpatialIndex();
+        points = new double[POINTS][];
+        for (int i = 0; i < POINTS; i++) {
+            double latitude = Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+            double longitude = i % 50 == 0 ? 180 : random.nextDouble() * 360 - 180;
+            points[i] = new double[]{latitude, longitude};
+            index.add(i, latitude, longitude);
+        }
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        for (int query = 0; query < 200; query++) {
+            double latitude = query % 10 == 0 ? 89.9 : random.nextDouble() * 180 - 90;
+            double longitude = query % 10 == 1 ? 179.99 : random.nextDouble() * 360 - 180;
+            List<SpatialIndex.Neighbour> nearest = index.nearest(latitude, longitude, 7);
+
+            Integer[] order = new Integer[POINTS];
+            for (int i = 0; i < POINTS; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> distanceTo(latitude, longitude, i)));
+            assertEquals(7, nearest.size());
+            for (int j = 0; j < 7; j++) {
+                assertEquals(distanceTo(latitude, longitude, order[j]), nearest.get(j).distanceKm(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void withinMatchesBruteForce() {
+        assertEquals(brute(-90, 90, -180, 180), Set.copyOf(index.within(-90, 90, -180, 180, Integer.MAX_VALUE)));
+        // Across the antimeridian and up to the pole
+        assertEquals(brute(60, 90, 170, -170), Set.copyOf(index.within(60, 90, 170, -170, Integer.MAX_VALUE)));
+
+        for (int query = 0; query < 200; query++) {
+            double minLatitude = random.nextDouble() * 160 - 90;
+            double maxLatitude = Math.min(90, minLatitude + random.nextDouble() * 30);
+            double minLongitude = random.nextDouble() * 360 - 180;
+            double maxLongitude = minLongitude + random.nextDouble() * 60;
+            if (maxLongitude > 180) maxLongitude -= 360;
+            assertEquals(brute(minLatitude, maxLatitude, minLongitude, maxLongitude),
+                    Set.copyOf(index.within(minLatitude, maxLatitude, minLongitude, maxLongitude, Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void limitsDuplicatesAndDistances() {
+        assertEquals(10, index.within(-90, 90, -180, 180, 10).size());
+        index.add(0, 0, 0);
+        index.add(POINTS, Double.NaN, 0);
+        assertEquals(POINTS, index.size());
+        assertTrue(new SpatialIndex().nearest(0, 0, 3).isEmpty());
+
+        // Belgrade to Novi Sad is about 70 km
+        assertEquals(70, SpatialIndex.distanceKm(44.8125, 20.4612, 45.2671, 19.8335), 5);
+    }
+
+    private double distanceTo(double latitude, double longitude, int i) {
+        return SpatialIndex.distanceKm(latitude, longitude, points[i][0], points[i][1]);
+    }
+
+    private Set<Long> brute(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < POINTS; i++) {
+            double latitude = points[i][0];
+            double longitude = points[i][1];
+            boolean longitudeWithin = minLongitude <= maxLongitude
+                    ? longitude >= minLongitude && longitude <= maxLongitude
+                    : longitude >= minLongitude || longitude <= maxLongitude;
+            if (latitude >= minLatitude && latitude <= maxLatitude && longitudeWithin) {
+                ids.add((long) i);
+            }
+        }
+        return ids;
+    }
+}